@@ -36,6 +36,7 @@ import org.cloudbus.cloudsim.VmStateHistoryEntry;
 import org.cloudbus.cloudsim.power.PowerDatacenter;
 import org.cloudbus.cloudsim.power.PowerDatacenterBroker;
 import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.power.PowerHostSelectionStrategies;
 import org.cloudbus.cloudsim.power.PowerHostUtilizationHistory;
 import org.cloudbus.cloudsim.power.PowerVm;
 import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationAbstract;
@@ -50,6 +51,7 @@ import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMaximumCorrelation;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMinimumMigrationTime;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMinimumUtilization;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyRandomSelection;
+import org.cloudbus.cloudsim.power.clustering.VmClusteringAlgorithms;
 import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
 import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
 import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
@@ -473,6 +475,11 @@ public class Helper {
 				Log.printLine(String.format("Execution time - total mean: %.5f sec", executionTimeTotalMean));
 				Log.printLine(String
 						.format("Execution time - total stDev: %.5f sec", executionTimeTotalStDev));
+				if (vmAllocationPolicy.getNumberOfBudgetExhaustedOptimizations() > 0) {
+					Log.printLine(String.format(
+							"Optimizations stopped by the consolidation budget: %d",
+							vmAllocationPolicy.getNumberOfBudgetExhaustedOptimizations()));
+				}
 			}
 			Log.printLine();
 		}
@@ -907,6 +914,67 @@ public class Helper {
 			return vmAllocationPolicy;
 		}
 
+		/**
+		 * Gets the vm allocation policy, clustering the VMs to migrate with the given algorithm.
+		 * 
+		 * @param vmAllocationPolicyName the vm allocation policy name
+		 * @param vmSelectionPolicyName the vm selection policy name
+		 * @param parameterName the parameter name
+		 * @param clusteringAlgorithmName the clustering algorithm name, or empty for k-means
+		 * @param hostList the host list
+		 * @return the vm allocation policy
+		 */
+		public static VmAllocationPolicy getVmAllocationPolicy(String vmAllocationPolicyName,String vmSelectionPolicyName,String parameterName,
+				String clusteringAlgorithmName, List<PowerHost> hostList) {
+			VmAllocationPolicy vmAllocationPolicy = getVmAllocationPolicy(
+					vmAllocationPolicyName,
+					vmSelectionPolicyName,
+					parameterName,
+					hostList);
+			if (!clusteringAlgorithmName.isEmpty()
+					&& vmAllocationPolicy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+				((PowerVmAllocationPolicyMigrationAbstract) vmAllocationPolicy)
+						.setClusteringAlgorithm(VmClusteringAlgorithms.forName(clusteringAlgorithmName));
+			}
+			return vmAllocationPolicy;
+		}
+
+		/**
+		 * Gets the vm allocation policy, clustering the VMs to migrate with the given algorithm and
+		 * placing them with the given host selection strategies.
+		 * 
+		 * @param vmAllocationPolicyName the vm allocation policy name
+		 * @param vmSelectionPolicyName the vm selection policy name
+		 * @param parameterName the parameter name
+		 * @param clusteringAlgorithmName the clustering algorithm name, or empty for k-means
+		 * @param hostSelectionName the host selection strategy name, or empty for ffdhdvp
+		 * @param underUtilizedHostSelectionName the host selection strategy name of the VMs of
+		 *            under-utilized hosts, or empty for mwfdvp
+		 * @param hostList the host list
+		 * @return the vm allocation policy
+		 */
+		public static VmAllocationPolicy getVmAllocationPolicy(String vmAllocationPolicyName,String vmSelectionPolicyName,String parameterName,
+				String clusteringAlgorithmName, String hostSelectionName, String underUtilizedHostSelectionName,
+				List<PowerHost> hostList) {
+			VmAllocationPolicy vmAllocationPolicy = getVmAllocationPolicy(
+					vmAllocationPolicyName,
+					vmSelectionPolicyName,
+					parameterName,
+					clusteringAlgorithmName,
+					hostList);
+			if (vmAllocationPolicy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+				PowerVmAllocationPolicyMigrationAbstract migrationPolicy = (PowerVmAllocationPolicyMigrationAbstract) vmAllocationPolicy;
+				if (!hostSelectionName.isEmpty()) {
+					migrationPolicy.setHostSelectionStrategy(PowerHostSelectionStrategies.forName(hostSelectionName));
+				}
+				if (!underUtilizedHostSelectionName.isEmpty()) {
+					migrationPolicy.setUnderUtilizedHostSelectionStrategy(
+							PowerHostSelectionStrategies.forName(underUtilizedHostSelectionName));
+				}
+			}
+			return vmAllocationPolicy;
+		}
+
 		public static PowerVmSelectionPolicy getVmSelectionPolicy(String vmSelectionPolicyName) {
 			PowerVmSelectionPolicy vmSelectionPolicy = null;
 			if (vmSelectionPolicyName.equals("mc")) {
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudbus.cloudsim.Cloudlet;
@@ -17,6 +18,8 @@ import org.cloudbus.cloudsim.VmAllocationPolicySimple;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.power.PowerDatacenter;
 import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.power.PowerHostSelectionStrategies;
+import org.cloudbus.cloudsim.power.PowerHostSelectionStrategy;
 import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationAbstract;
 import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationInterQuartileRange;
 import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationLocalRegression;
@@ -30,6 +33,8 @@ import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMaximumCorrelation;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMinimumMigrationTime;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMinimumUtilization;
 import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyRandomSelection;
+import org.cloudbus.cloudsim.power.clustering.VmClusteringAlgorithms;
+import org.cloudbus.cloudsim.util.MathUtil;
 
 /**
  * The Class RunnerAbstract.
@@ -46,6 +51,9 @@ import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyRandomSelection;
  */
 public abstract class RunnerAbstract {
 
+	/** The host selection name running every host selection strategy on the same workload. */
+	public static final String HOST_SELECTION_BENCHMARK = "benchmark";
+
 	/** The enable output. */
 	private static boolean enableOutput;
 
@@ -82,6 +90,48 @@ public abstract class RunnerAbstract {
 			String vmAllocationPolicy,
 			String vmSelectionPolicy,
 			String parameter) {
+		this(
+				enableOutput,
+				outputToFile,
+				inputFolder,
+				outputFolder,
+				workload,
+				vmAllocationPolicy,
+				vmSelectionPolicy,
+				parameter,
+				"");
+	}
+
+	/**
+	 * Run with the given host selection strategy, or run every host selection strategy on the
+	 * same workload and report the placement latency and the energy of each if the host selection
+	 * is {@link #HOST_SELECTION_BENCHMARK}.
+	 * 
+	 * @param enableOutput the enable output
+	 * @param outputToFile the output to file
+	 * @param inputFolder the input folder
+	 * @param outputFolder the output folder
+	 * @param workload the workload
+	 * @param vmAllocationPolicy the vm allocation policy
+	 * @param vmSelectionPolicy the vm selection policy
+	 * @param parameter the parameter
+	 * @param hostSelection the host selection strategy name, empty for the default one, or
+	 *            {@link #HOST_SELECTION_BENCHMARK}
+	 */
+	public RunnerAbstract(
+			boolean enableOutput,
+			boolean outputToFile,
+			String inputFolder,
+			String outputFolder,
+			String workload,
+			String vmAllocationPolicy,
+			String vmSelectionPolicy,
+			String parameter,
+			String hostSelection) {
+		if (hostSelection.equals(HOST_SELECTION_BENCHMARK)) {
+			benchmark(enableOutput, inputFolder, outputFolder, workload, vmAllocationPolicy, vmSelectionPolicy, parameter);
+			return;
+		}
 		try {
 			initLogOutput(
 					enableOutput,
@@ -98,9 +148,67 @@ public abstract class RunnerAbstract {
 
 		init(inputFolder + "/" + workload);
 		start(
-				getExperimentName(workload, vmAllocationPolicy, vmSelectionPolicy, parameter),
+				getExperimentName(workload, vmAllocationPolicy, vmSelectionPolicy, parameter, hostSelection),
 				outputFolder,
-				getVmAllocationPolicy(vmAllocationPolicy, vmSelectionPolicy, parameter));
+				getVmAllocationPolicy(vmAllocationPolicy, vmSelectionPolicy, parameter, "", hostSelection, ""));
+	}
+
+	/**
+	 * Runs the workload once per host selection strategy and prints, for each strategy, the mean
+	 * VM reallocation time of the optimizations, which is the placement latency, and the energy
+	 * consumption. The simulation log is disabled during the runs.
+	 * 
+	 * @param enableOutput the enable output
+	 * @param inputFolder the input folder
+	 * @param outputFolder the output folder
+	 * @param workload the workload
+	 * @param vmAllocationPolicy the vm allocation policy
+	 * @param vmSelectionPolicy the vm selection policy
+	 * @param parameter the parameter
+	 */
+	protected void benchmark(
+			boolean enableOutput,
+			String inputFolder,
+			String outputFolder,
+			String workload,
+			String vmAllocationPolicy,
+			String vmSelectionPolicy,
+			String parameter) {
+		setEnableOutput(enableOutput);
+		Log.setDisabled(true);
+		List<String> lines = new ArrayList<String>();
+		for (PowerHostSelectionStrategy strategy : PowerHostSelectionStrategies.getStrategies()) {
+			init(inputFolder + "/" + workload);
+			VmAllocationPolicy policy = getVmAllocationPolicy(
+					vmAllocationPolicy,
+					vmSelectionPolicy,
+					parameter,
+					"",
+					strategy.getName(),
+					"");
+			PowerDatacenter datacenter = simulate(
+					getExperimentName(workload, vmAllocationPolicy, vmSelectionPolicy, parameter, strategy.getName()),
+					outputFolder,
+					policy);
+			double placementLatency = Double.NaN;
+			if (policy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+				List<Double> reallocationTimes = ((PowerVmAllocationPolicyMigrationAbstract) policy)
+						.getExecutionTimeHistoryVmReallocation();
+				if (!reallocationTimes.isEmpty()) {
+					placementLatency = MathUtil.mean(reallocationTimes);
+				}
+			}
+			lines.add(String.format(
+					"%-10s %20.5f %15.2f",
+					strategy.getName(),
+					placementLatency,
+					datacenter.getPower() / (3600 * 1000)));
+		}
+		Log.setDisabled(!isEnableOutput());
+		System.out.println(String.format("%-10s %20s %15s", "Strategy", "Placement latency, s", "Energy, kWh"));
+		for (String line : lines) {
+			System.out.println(line);
+		}
 	}
 
 	/**
@@ -159,10 +267,23 @@ public abstract class RunnerAbstract {
 	 * @param vmAllocationPolicy the vm allocation policy
 	 */
 	protected void start(String experimentName, String outputFolder, VmAllocationPolicy vmAllocationPolicy) {
+		simulate(experimentName, outputFolder, vmAllocationPolicy);
+	}
+
+	/**
+	 * Runs the simulation and prints its results.
+	 * 
+	 * @param experimentName the experiment name
+	 * @param outputFolder the output folder
+	 * @param vmAllocationPolicy the vm allocation policy
+	 * @return the simulated datacenter
+	 */
+	protected PowerDatacenter simulate(String experimentName, String outputFolder, VmAllocationPolicy vmAllocationPolicy) {
 		System.out.println("Starting " + experimentName);
 
+		PowerDatacenter datacenter = null;
 		try {
-			PowerDatacenter datacenter = (PowerDatacenter) Helper.createDatacenter(
+			datacenter = (PowerDatacenter) Helper.createDatacenter(
 					"Datacenter",
 					PowerDatacenter.class,
 					hostList,
@@ -196,6 +317,7 @@ public abstract class RunnerAbstract {
 		}
 
 		Log.printLine("Finished " + experimentName);
+		return datacenter;
 	}
 
 	/**
@@ -218,6 +340,70 @@ public abstract class RunnerAbstract {
 		return experimentName.toString();
 	}
 
+	/**
+	 * Gets the vm allocation policy, clustering the VMs to migrate with the given algorithm.
+	 * 
+	 * @param vmAllocationPolicyName the vm allocation policy name
+	 * @param vmSelectionPolicyName the vm selection policy name
+	 * @param parameterName the parameter name
+	 * @param clusteringAlgorithmName the clustering algorithm name, or empty for k-means
+	 * @return the vm allocation policy
+	 */
+	protected VmAllocationPolicy getVmAllocationPolicy(
+			String vmAllocationPolicyName,
+			String vmSelectionPolicyName,
+			String parameterName,
+			String clusteringAlgorithmName) {
+		VmAllocationPolicy vmAllocationPolicy = getVmAllocationPolicy(
+				vmAllocationPolicyName,
+				vmSelectionPolicyName,
+				parameterName);
+		if (!clusteringAlgorithmName.isEmpty()
+				&& vmAllocationPolicy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+			((PowerVmAllocationPolicyMigrationAbstract) vmAllocationPolicy)
+					.setClusteringAlgorithm(VmClusteringAlgorithms.forName(clusteringAlgorithmName));
+		}
+		return vmAllocationPolicy;
+	}
+
+	/**
+	 * Gets the vm allocation policy, clustering the VMs to migrate with the given algorithm and
+	 * placing them with the given host selection strategies.
+	 * 
+	 * @param vmAllocationPolicyName the vm allocation policy name
+	 * @param vmSelectionPolicyName the vm selection policy name
+	 * @param parameterName the parameter name
+	 * @param clusteringAlgorithmName the clustering algorithm name, or empty for k-means
+	 * @param hostSelectionName the host selection strategy name, or empty for ffdhdvp
+	 * @param underUtilizedHostSelectionName the host selection strategy name of the VMs of
+	 *            under-utilized hosts, or empty for mwfdvp
+	 * @return the vm allocation policy
+	 */
+	protected VmAllocationPolicy getVmAllocationPolicy(
+			String vmAllocationPolicyName,
+			String vmSelectionPolicyName,
+			String parameterName,
+			String clusteringAlgorithmName,
+			String hostSelectionName,
+			String underUtilizedHostSelectionName) {
+		VmAllocationPolicy vmAllocationPolicy = getVmAllocationPolicy(
+				vmAllocationPolicyName,
+				vmSelectionPolicyName,
+				parameterName,
+				clusteringAlgorithmName);
+		if (vmAllocationPolicy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+			PowerVmAllocationPolicyMigrationAbstract migrationPolicy = (PowerVmAllocationPolicyMigrationAbstract) vmAllocationPolicy;
+			if (!hostSelectionName.isEmpty()) {
+				migrationPolicy.setHostSelectionStrategy(PowerHostSelectionStrategies.forName(hostSelectionName));
+			}
+			if (!underUtilizedHostSelectionName.isEmpty()) {
+				migrationPolicy.setUnderUtilizedHostSelectionStrategy(
+						PowerHostSelectionStrategies.forName(underUtilizedHostSelectionName));
+			}
+		}
+		return vmAllocationPolicy;
+	}
+
 	/**
 	 * Gets the vm allocation policy.
 	 * 
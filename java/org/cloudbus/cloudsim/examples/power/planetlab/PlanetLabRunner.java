@@ -55,6 +55,42 @@ public class PlanetLabRunner extends RunnerAbstract {
 				parameter);
 	}
 
+	/**
+	 * Instantiates a new planet lab runner running the given host selection strategy, or every
+	 * strategy if it is {@link RunnerAbstract#HOST_SELECTION_BENCHMARK}.
+	 * 
+	 * @param enableOutput the enable output
+	 * @param outputToFile the output to file
+	 * @param inputFolder the input folder
+	 * @param outputFolder the output folder
+	 * @param workload the workload
+	 * @param vmAllocationPolicy the vm allocation policy
+	 * @param vmSelectionPolicy the vm selection policy
+	 * @param parameter the parameter
+	 * @param hostSelection the host selection strategy name
+	 */
+	public PlanetLabRunner(
+			boolean enableOutput,
+			boolean outputToFile,
+			String inputFolder,
+			String outputFolder,
+			String workload,
+			String vmAllocationPolicy,
+			String vmSelectionPolicy,
+			String parameter,
+			String hostSelection) {
+		super(
+				enableOutput,
+				outputToFile,
+				inputFolder,
+				outputFolder,
+				workload,
+				vmAllocationPolicy,
+				vmSelectionPolicy,
+				parameter,
+				hostSelection);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -76,6 +76,22 @@ public class PowerDatacenter extends Datacenter {
 		setMigrationCount(0);
 	}
 
+	/**
+	 * Gets the migrations of the current interval from the VM allocation policy, as a plan. The
+	 * migration policies of the power package build the plan directly; the migration map of any
+	 * other policy is converted.
+	 * 
+	 * @return the migration plan, or null if the policy returned no migration map
+	 */
+	protected PowerMigrationPlan optimizeMigrationPlan() {
+		VmAllocationPolicy vmAllocationPolicy = getVmAllocationPolicy();
+		if (vmAllocationPolicy instanceof PowerVmAllocationPolicyMigrationAbstract) {
+			return ((PowerVmAllocationPolicyMigrationAbstract) vmAllocationPolicy).optimizeMigrationPlan(getVmList());
+		}
+		List<Map<String, Object>> migrationMap = vmAllocationPolicy.optimizeAllocation(getVmList());
+		return migrationMap == null ? null : PowerMigrationPlan.fromMigrationMap(migrationMap);
+	}
+
 	@Override
 	protected void updateCloudletProcessing() {
 		if (getCloudletSubmitted() == -1 || getCloudletSubmitted() == CloudSim.clock()) {
@@ -92,13 +108,12 @@ public class PowerDatacenter extends Datacenter {
 			double minTime = updateCloudetProcessingWithoutSchedulingFutureEventsForce();
 
 			if (!isDisableMigrations()) {
-				List<Map<String, Object>> migrationMap = getVmAllocationPolicy().optimizeAllocation(
-						getVmList());
+				PowerMigrationPlan migrationPlan = optimizeMigrationPlan();
 
-				if (migrationMap != null) {
-					for (Map<String, Object> migrate : migrationMap) {
-						Vm vm = (Vm) migrate.get("vm");
-						PowerHost targetHost = (PowerHost) migrate.get("host");
+				if (migrationPlan != null) {
+					for (int i = 0; i < migrationPlan.size(); i++) {
+						Vm vm = migrationPlan.getVm(i);
+						PowerHost targetHost = migrationPlan.getTargetHost(i);
 						PowerHost oldHost = (PowerHost) vm.getHost();
 
 						if (oldHost == null) {
@@ -119,15 +134,12 @@ public class PowerDatacenter extends Datacenter {
 						targetHost.addMigratingInVm(vm);
 						incrementMigrationCount();
 
-						/** VM migration delay = RAM / bandwidth **/
-						// we use BW / 2 to model BW available for migration purposes, the other
-						// half of BW is for VM communication
-						// around 16 seconds for 1024 MB using 1 Gbit/s network
+						/** VM migration delay = RAM / (bandwidth / 2), see PowerMigrationPlan#estimateDuration **/
 						send(
 								getId(),
-								vm.getRam() / ((double) targetHost.getBw() / (2 * 8000)),
+								migrationPlan.getEstimatedDuration(i),
 								CloudSimTags.VM_MIGRATE,
-								migrate);
+								migrationPlan.getMigration(i));
 					}
 				}
 			}
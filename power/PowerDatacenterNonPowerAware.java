@@ -10,8 +10,6 @@ package org.cloudbus.cloudsim.power;
 
 import java.util.List;
 
-import java.util.Map;
-
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Storage;
@@ -130,13 +128,12 @@ public class PowerDatacenterNonPowerAware extends PowerDatacenter {
 			Log.printLine();
 
 			if (!isDisableMigrations()) {
-				List<Map<String, Object>> migrationMap = getVmAllocationPolicy().optimizeAllocation(
-						getVmList());
+				PowerMigrationPlan migrationPlan = optimizeMigrationPlan();
 
-				if (migrationMap != null) {
-					for (Map<String, Object> migrate : migrationMap) {
-						Vm vm = (Vm) migrate.get("vm");
-						PowerHost targetHost = (PowerHost) migrate.get("host");
+				if (migrationPlan != null) {
+					for (int i = 0; i < migrationPlan.size(); i++) {
+						Vm vm = migrationPlan.getVm(i);
+						PowerHost targetHost = migrationPlan.getTargetHost(i);
 						PowerHost oldHost = (PowerHost) vm.getHost();
 
 						if (oldHost == null) {
@@ -162,7 +159,7 @@ public class PowerDatacenterNonPowerAware extends PowerDatacenter {
 								getId(),
 								vm.getRam() / ((double) vm.getBw() / 8000) + 10,
 								CloudSimTags.VM_MIGRATE,
-								migrate);
+								migrationPlan.getMigration(i));
 					}
 				}
 			}
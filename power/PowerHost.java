@@ -22,6 +22,7 @@ import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmScheduler;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.power.models.PowerModel;
+import org.cloudbus.cloudsim.power.models.PowerModels;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
 import org.cloudbus.cloudsim.provisioners.RamProvisioner;
 
@@ -46,6 +47,39 @@ public class PowerHost extends HostDynamicWorkload {
 	/** The power model used by the host. */
 	private PowerModel powerModel;
 
+	/** Whether the MIPS totals are checked against a full recomputation on every read. */
+	private static boolean aggregateCheckEnabled;
+
+	/** The total MIPS allocated to the VMs of the host, the VMs migrating in included. */
+	private double allocatedMipsOfVms;
+
+	/** The total MIPS allocated to the VMs migrating in to the host. */
+	private double allocatedMipsOfMigratingInVms;
+
+	/** The version of the VM list and VM workload of the host, see {@link #getStateVersion()}. */
+	private long stateVersion;
+
+	/** The sum of the utilization history versions of the VMs at the last processing update. */
+	private long utilizationHistoryVersionOfVms;
+
+	/** The total MIPS requested by the VMs at the last processing update. */
+	private double requestedTotalMipsOfVms;
+
+	/** The number of times the MIPS totals were summed again over all the VMs. */
+	private long allocatedMipsResums;
+
+	/** The MIPS allocated to the VM being changed, before the change. */
+	private double changedVmAllocatedMips;
+
+	/** Whether the VM being changed was migrating in, before the change. */
+	private boolean changedVmMigratingIn;
+
+	/** The available MIPS of the VM scheduler, before the change. */
+	private double availableMipsBeforeChange;
+
+	/** The number of re-sums of the totals, before the change. */
+	private long allocatedMipsResumsBeforeChange;
+
 	/**
 	 * Instantiates a new PowerHost.
 	 * 
@@ -83,14 +117,14 @@ public class PowerHost extends HostDynamicWorkload {
 	 * @param utilization the utilization percentage (between [0 and 1]) of a resource that
          * is critical for power consumption
 	 * @return the power consumption
+	 * @throws IllegalStateException if the utilization is not between 0 and 1, which the
+	 *         allocation of the VMs of the host never leads to
 	 */
 	protected double getPower(double utilization) {
-		double power = 0;
-		try {
-			power = getPowerModel().getPower(utilization);
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(0);
+		double power = PowerModels.getPowerOrNaN(getPowerModel(), utilization);
+		if (Double.isNaN(power)) {
+			throw new IllegalStateException("Utilization " + utilization + " of host #" + getId()
+					+ " is not between 0 and 1");
 		}
 		return power;
 	}
@@ -101,14 +135,7 @@ public class PowerHost extends HostDynamicWorkload {
 	 * @return the max power
 	 */
 	public double getMaxPower() {
-		double power = 0;
-		try {
-			power = getPowerModel().getPower(1);
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(0);
-		}
-		return power;
+		return getPowerModel().getPower(1);
 	}
 
 	/**
@@ -145,6 +172,341 @@ public class PowerHost extends HostDynamicWorkload {
 	public PowerModel getPowerModel() {
 		return powerModel;
 	}
+
+	/**
+	 * Checks whether the host can accommodate a VM, without placing it: the checks of
+	 * {@link #isSuitableForVm(Vm)} plus the storage required on VM creation.
+	 * 
+	 * @param vm the candidate vm
+	 * @return true, if the VM can be created on the host
+	 */
+	public boolean canAccommodate(Vm vm) {
+		return isSuitableForVm(vm) && getStorage() >= vm.getSize();
+	}
+
+	/**
+	 * Gets the total MIPS requested by the VMs of the host, with a candidate VM placed on it.
+	 * The VM is not in fact placed at the host, so no provisioner is touched.
+	 * 
+	 * @param vm the candidate vm, or null for the current VMs only
+	 * @return the projected requested MIPS
+	 */
+	public double getProjectedRequestedTotalMips(Vm vm) {
+		double totalRequestedMips = 0;
+		for (Vm hostVm : getVmList()) {
+			totalRequestedMips += hostVm.getCurrentRequestedTotalMips();
+		}
+		if (vm != null) {
+			totalRequestedMips += vm.getCurrentRequestedTotalMips();
+		}
+		return totalRequestedMips;
+	}
+
+	/**
+	 * Gets the CPU utilization percentage of the host, as requested by its VMs, with a
+	 * candidate VM placed on it. The VM is not in fact placed at the host.
+	 * 
+	 * @param vm the candidate vm, or null for the current VMs only
+	 * @return the projected CPU utilization, which may exceed 1
+	 */
+	public double getProjectedUtilizationOfCpu(Vm vm) {
+		return getProjectedRequestedTotalMips(vm) / getTotalMips();
+	}
+
+	/**
+	 * Gets the power consumption of the host with a candidate VM placed on it. The VM is not
+	 * in fact placed at the host. A utilization above 1 is counted as a fully utilized host.
+	 * 
+	 * @param vm the candidate vm, or null for the current VMs only
+	 * @return the projected power consumption
+	 */
+	public double getProjectedPower(Vm vm) {
+		return getPower(Math.min(getProjectedUtilizationOfCpu(vm), 1));
+	}
+
+	@Override
+	public boolean vmCreate(Vm vm) {
+		beginAllocationChange(vm);
+		boolean result = super.vmCreate(vm);
+		endAllocationChange(vm);
+		if (result) {
+			stateVersion++;
+		}
+		return result;
+	}
+
+	@Override
+	public void vmDestroy(Vm vm) {
+		beginAllocationChange(vm);
+		super.vmDestroy(vm);
+		endAllocationChange(vm);
+		stateVersion++;
+	}
+
+	@Override
+	public void vmDestroyAll() {
+		super.vmDestroyAll();
+		// no VM is left to hold an allocation
+		allocatedMipsOfVms = 0;
+		allocatedMipsOfMigratingInVms = 0;
+		stateVersion++;
+	}
+
+	@Override
+	public void addMigratingInVm(Vm vm) {
+		beginAllocationChange(vm);
+		super.addMigratingInVm(vm);
+		endAllocationChange(vm);
+		stateVersion++;
+	}
+
+	@Override
+	public void removeMigratingInVm(Vm vm) {
+		beginAllocationChange(vm);
+		super.removeMigratingInVm(vm);
+		endAllocationChange(vm);
+		stateVersion++;
+	}
+
+	@Override
+	public void reallocateMigratingInVms() {
+		double allocatedMipsBefore = 0;
+		for (Vm vm : getVmsMigratingIn()) {
+			allocatedMipsBefore += getTotalAllocatedMipsForVm(vm);
+		}
+		double availableMipsBefore = getAvailableMips();
+		long resumsBefore = allocatedMipsResums;
+		super.reallocateMigratingInVms();
+		if (allocatedMipsResums == resumsBefore) {
+			double allocatedMipsAfter = 0;
+			for (Vm vm : getVmsMigratingIn()) {
+				allocatedMipsAfter += getTotalAllocatedMipsForVm(vm);
+			}
+			applyAllocationDelta(allocatedMipsAfter - allocatedMipsBefore, allocatedMipsAfter - allocatedMipsBefore,
+					availableMipsBefore);
+		}
+		stateVersion++;
+	}
+
+	@Override
+	public double updateVmsProcessing(double currentTime) {
+		double smallerTime = super.updateVmsProcessing(currentTime);
+		// the update allocates every VM again, so the totals are summed again in the pass that
+		// checks the workload of the VMs
+		long utilizationHistoryVersion = 0;
+		double requestedTotalMips = 0;
+		double allocatedMips = 0;
+		for (Vm vm : getVmList()) {
+			if (vm instanceof PowerVm) {
+				utilizationHistoryVersion += ((PowerVm) vm).getUtilizationHistoryVersion();
+			}
+			requestedTotalMips += vm.getCurrentRequestedTotalMips();
+			allocatedMips += getTotalAllocatedMipsForVm(vm);
+		}
+		allocatedMipsOfVms = allocatedMips;
+		allocatedMipsOfMigratingInVms = sumAllocatedMipsOfMigratingInVms();
+		allocatedMipsResums++;
+		updateStateVersion(utilizationHistoryVersion, requestedTotalMips);
+		return smallerTime;
+	}
+
+	/**
+	 * Changes the state version if the workload of the VMs changed in the last processing update,
+	 * that is if a VM added a utilization history value or the MIPS requested by the VMs changed.
+	 * 
+	 * @param utilizationHistoryVersion the sum of the utilization history versions of the VMs
+	 * @param requestedTotalMips the total MIPS requested by the VMs
+	 */
+	protected void updateStateVersion(long utilizationHistoryVersion, double requestedTotalMips) {
+		if (utilizationHistoryVersion != utilizationHistoryVersionOfVms
+				|| requestedTotalMips != requestedTotalMipsOfVms) {
+			utilizationHistoryVersionOfVms = utilizationHistoryVersion;
+			requestedTotalMipsOfVms = requestedTotalMips;
+			stateVersion++;
+		}
+	}
+
+	/**
+	 * Gets the version of the state the over-utilization of the host is decided on: its VM list,
+	 * the utilization histories of its VMs and the MIPS they request. It changes every time a VM
+	 * is created on or removed from the host, starts or stops migrating in, or when a processing
+	 * update changes the workload of the VMs, so that decisions taken on the host can be cached
+	 * until it changes.
+	 * 
+	 * @return the state version
+	 */
+	public long getStateVersion() {
+		return stateVersion;
+	}
+
+	/**
+	 * Records the allocation of a VM before a change of the host that only allocates or frees
+	 * that VM, see {@link #endAllocationChange(Vm)}.
+	 * 
+	 * @param vm the vm
+	 */
+	private void beginAllocationChange(Vm vm) {
+		changedVmAllocatedMips = getTotalAllocatedMipsForVm(vm);
+		changedVmMigratingIn = getVmsMigratingIn().contains(vm);
+		availableMipsBeforeChange = getAvailableMips();
+		allocatedMipsResumsBeforeChange = allocatedMipsResums;
+	}
+
+	/**
+	 * Applies the change of the allocation of a VM to the MIPS totals, in constant time. If a
+	 * processing update run by the change already summed the totals again, they are kept.
+	 * 
+	 * @param vm the vm
+	 */
+	private void endAllocationChange(Vm vm) {
+		if (allocatedMipsResums != allocatedMipsResumsBeforeChange) {
+			return;
+		}
+		double allocatedMips = getTotalAllocatedMipsForVm(vm);
+		boolean migratingIn = getVmsMigratingIn().contains(vm);
+		applyAllocationDelta(
+				allocatedMips - changedVmAllocatedMips,
+				(migratingIn ? allocatedMips : 0) - (changedVmMigratingIn ? changedVmAllocatedMips : 0),
+				availableMipsBeforeChange);
+	}
+
+	/**
+	 * Applies a change of allocation to the MIPS totals. The VM scheduler may also have shared
+	 * its capacity again among the other VMs, e.g. an over-subscribing scheduler on a VM
+	 * removal: the available MIPS of the scheduler then moved by another amount than the change,
+	 * and the totals are summed again over all the VMs instead.
+	 * 
+	 * @param allocatedMipsDelta the change of the MIPS allocated to the VMs
+	 * @param migratingInMipsDelta the change of the MIPS allocated to the VMs migrating in
+	 * @param availableMipsBefore the available MIPS of the VM scheduler before the change
+	 */
+	private void applyAllocationDelta(double allocatedMipsDelta, double migratingInMipsDelta, double availableMipsBefore) {
+		double availableMipsDelta = getAvailableMips() - availableMipsBefore;
+		if (!isSameMips(-availableMipsDelta, allocatedMipsDelta)) {
+			resumAllocatedMips();
+			return;
+		}
+		allocatedMipsOfVms += allocatedMipsDelta;
+		allocatedMipsOfMigratingInVms += migratingInMipsDelta;
+	}
+
+	/**
+	 * Sums the MIPS totals again over all the VMs of the host, in O(V + M) for V VMs of which M
+	 * are migrating in.
+	 */
+	protected void resumAllocatedMips() {
+		double allocatedMips = 0;
+		for (Vm vm : getVmList()) {
+			allocatedMips += getTotalAllocatedMipsForVm(vm);
+		}
+		allocatedMipsOfVms = allocatedMips;
+		allocatedMipsOfMigratingInVms = sumAllocatedMipsOfMigratingInVms();
+		allocatedMipsResums++;
+	}
+
+	/**
+	 * Sums the MIPS allocated to the VMs migrating in to the host, over the list of the VMs
+	 * migrating in; a VM not on the host any more holds no allocation.
+	 * 
+	 * @return the allocated MIPS
+	 */
+	private double sumAllocatedMipsOfMigratingInVms() {
+		double allocatedMips = 0;
+		for (Vm vm : getVmsMigratingIn()) {
+			allocatedMips += getTotalAllocatedMipsForVm(vm);
+		}
+		return allocatedMips;
+	}
+
+	/**
+	 * Computes a MIPS total by summing the allocation of the VMs of the host, for the
+	 * {@link #isAggregateCheckEnabled() aggregate check} only.
+	 * 
+	 * @param migratingInOnly true to sum over the VMs migrating in only
+	 * @return the allocated MIPS
+	 */
+	private double computeAllocatedMips(boolean migratingInOnly) {
+		double allocatedMips = 0;
+		for (Vm vm : getVmList()) {
+			if (!migratingInOnly || getVmsMigratingIn().contains(vm)) {
+				allocatedMips += getTotalAllocatedMipsForVm(vm);
+			}
+		}
+		return allocatedMips;
+	}
+
+	/**
+	 * Gets the total MIPS allocated to the VMs of the host, the VMs migrating in included.
+	 * 
+	 * @return the allocated MIPS
+	 */
+	public double getAllocatedMipsOfVms() {
+		if (isAggregateCheckEnabled()) {
+			checkAllocatedMips();
+		}
+		return allocatedMipsOfVms;
+	}
+
+	/**
+	 * Gets the total MIPS allocated to the VMs migrating in to the host.
+	 * 
+	 * @return the allocated MIPS
+	 */
+	public double getAllocatedMipsOfMigratingInVms() {
+		if (isAggregateCheckEnabled()) {
+			checkAllocatedMips();
+		}
+		return allocatedMipsOfMigratingInVms;
+	}
+
+	/**
+	 * Checks the MIPS totals against a full recomputation. The totals are not changed, so that
+	 * the check can run from concurrent placement scans.
+	 * 
+	 * @throws IllegalStateException if the totals are stale, that is the allocation of the VM
+	 *             scheduler was changed without going through the host
+	 */
+	protected void checkAllocatedMips() {
+		double allocatedMips = computeAllocatedMips(false);
+		double migratingInMips = computeAllocatedMips(true);
+		if (!isSameMips(allocatedMipsOfVms, allocatedMips)
+				|| !isSameMips(allocatedMipsOfMigratingInVms, migratingInMips)) {
+			throw new IllegalStateException("Stale MIPS totals on host #" + getId() + ": " + allocatedMipsOfVms + "/"
+					+ allocatedMipsOfMigratingInVms + " instead of " + allocatedMips + "/" + migratingInMips);
+		}
+	}
+
+	/**
+	 * Checks whether two MIPS totals are equal up to the rounding of their sums.
+	 * 
+	 * @param a the first total
+	 * @param b the second total
+	 * @return true, if the totals are equal
+	 */
+	public static boolean isSameMips(double a, double b) {
+		return Math.abs(a - b) <= 1e-9 * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+	}
+
+	/**
+	 * Checks whether the MIPS totals of the hosts are checked against a full recomputation on
+	 * every read.
+	 * 
+	 * @return true, if the check is enabled
+	 */
+	public static boolean isAggregateCheckEnabled() {
+		return aggregateCheckEnabled;
+	}
+
+	/**
+	 * Enables or disables the check of the MIPS totals of the hosts against a full
+	 * recomputation on every read. The check costs as much as the loop the totals replace, and
+	 * is meant for debugging.
+	 * 
+	 * @param aggregateCheckEnabled true to enable the check
+	 */
+	public static void setAggregateCheckEnabled(boolean aggregateCheckEnabled) {
+		PowerHost.aggregateCheckEnabled = aggregateCheckEnabled;
+	}
 	///////////////////////////
 
 			//Creation du comparateur .
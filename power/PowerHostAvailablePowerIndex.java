@@ -0,0 +1,143 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An ordering of hosts by available power decreasing, that is the power a host can still draw
+ * before reaching its maximum power, kept up to date without sorting the host list. Hosts of the
+ * same available power are ordered by id.
+ *
+ * <br/>Every host is keyed by its available power, computed from the power model once per change
+ * of the CPU utilization of the host: {@link #refresh(List)} checks the utilization of every host
+ * and re-keys only the hosts whose load changed, in O(log H) each. The order is read through
+ * read-only views, so that neither the host list of the policy nor the index can be reordered
+ * by the readers.
+ *
+ * <br/>The key is the available power of the live host, as read by
+ * {@link PowerHost#getAvailablePower(PowerHost)}; tentative placements of a placement overlay do
+ * not change it.
+ */
+public class PowerHostAvailablePowerIndex {
+
+	/** The key of every indexed host. */
+	private final Map<PowerHost, Key> keys = new IdentityHashMap<PowerHost, Key>();
+
+	/** The indexed hosts, by available power decreasing. */
+	private final TreeSet<PowerHost> ordered = new TreeSet<PowerHost>(new Comparator<PowerHost>() {
+
+		@Override
+		public int compare(PowerHost a, PowerHost b) {
+			int result = Double.compare(keys.get(b).availablePower, keys.get(a).availablePower);
+			if (result == 0) {
+				result = a.getId() < b.getId() ? -1 : (a.getId() == b.getId() ? 0 : 1);
+			}
+			return result;
+		}
+	});
+
+	/** The read-only view of the hosts by available power decreasing. */
+	private final Collection<PowerHost> decreasingView = Collections.unmodifiableSet(ordered);
+
+	/** The read-only view of the hosts by available power increasing. */
+	private final Collection<PowerHost> increasingView = Collections.unmodifiableSet(ordered.descendingSet());
+
+	/**
+	 * The key of a host.
+	 */
+	private static class Key {
+
+		/** The CPU utilization the available power was computed for. */
+		private double utilization;
+
+		/** The available power. */
+		private double availablePower;
+
+	}
+
+	/**
+	 * Updates the index to the given hosts: hosts not indexed yet are added, and hosts whose CPU
+	 * utilization changed since they were keyed are re-keyed. If indexed hosts are missing from the
+	 * list, the index is rebuilt.
+	 *
+	 * @param hosts the hosts to index
+	 */
+	public void refresh(List<? extends PowerHost> hosts) {
+		for (PowerHost host : hosts) {
+			update(host);
+		}
+		if (keys.size() != hosts.size()) {
+			ordered.clear();
+			keys.clear();
+			for (PowerHost host : hosts) {
+				update(host);
+			}
+		}
+	}
+
+	/**
+	 * Re-keys a host if its CPU utilization changed since it was keyed, or adds it to the index.
+	 *
+	 * @param host the host
+	 */
+	public void update(PowerHost host) {
+		double utilization = host.getUtilizationOfCpu();
+		Key key = keys.get(host);
+		if (key != null) {
+			if (key.utilization == utilization) {
+				return;
+			}
+			ordered.remove(host);
+		} else {
+			key = new Key();
+			keys.put(host, key);
+		}
+		key.utilization = utilization;
+		key.availablePower = PowerHost.getAvailablePower(host);
+		ordered.add(host);
+	}
+
+	/**
+	 * Gets the indexed hosts by available power decreasing.
+	 *
+	 * @return a read-only view of the hosts, following the updates of the index
+	 */
+	public Collection<PowerHost> getHostsByDecreasingAvailablePower() {
+		return decreasingView;
+	}
+
+	/**
+	 * Gets the indexed hosts by available power increasing, that is in the reverse order of
+	 * {@link #getHostsByDecreasingAvailablePower()}.
+	 *
+	 * @return a read-only view of the hosts, following the updates of the index
+	 */
+	public Collection<PowerHost> getHostsByIncreasingAvailablePower() {
+		return increasingView;
+	}
+
+	/**
+	 * Gets the available power a host is keyed by.
+	 *
+	 * @param host the host
+	 * @return the available power, or NaN if the host is not indexed
+	 */
+	public double getAvailablePower(PowerHost host) {
+		Key key = keys.get(host);
+		return key == null ? Double.NaN : key.availablePower;
+	}
+
+}
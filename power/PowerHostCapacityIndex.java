@@ -0,0 +1,310 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * An index of hosts by residual capacity, used to skip the hosts that cannot fit a VM before
+ * running the costly suitability, over-utilization and power checks of a placement scan.
+ *
+ * <br/>Hosts are bucketed by available MIPS on a log2 scale; every bucket is a bit set over the
+ * positions of the hosts in the host list. A query ORs the buckets that may hold the requested
+ * MIPS and then checks the exact available MIPS and free RAM of each host, so the candidates come
+ * out in host list order and a scan over them picks the same host as a scan over the whole list.
+ * A host is only skipped when it fails the necessary conditions of {@link Host#isSuitableForVm(Vm)};
+ * the host already running the VM is never skipped, as its own allocation counts as free.
+ *
+ * <br/>The index is a snapshot: it must be rebuilt when the host list is reordered, and updated
+ * for every host whose allocation changed since. Built on a placement overlay, it indexes the
+ * planned capacity of the hosts.
+ */
+public class PowerHostCapacityIndex {
+
+	/** The number of log2 buckets of available MIPS. */
+	private static final int BUCKETS = 40;
+
+	/** The indexed hosts, in host list order. */
+	private final List<PowerHost> hosts = new ArrayList<PowerHost>();
+
+	/** The position of every indexed host. */
+	private final Map<Host, Integer> positions = new IdentityHashMap<Host, Integer>();
+
+	/** The available MIPS of every host. */
+	private double[] availableMips = new double[0];
+
+	/** The free RAM of every host. */
+	private int[] availableRam = new int[0];
+
+	/** The bucket of every host. */
+	private int[] hostBuckets = new int[0];
+
+	/** The hosts of every bucket. */
+	private final BitSet[] buckets = new BitSet[BUCKETS];
+
+	/** The scratch set of the candidates of a query. */
+	private final BitSet candidates = new BitSet();
+
+	/** The placement overlay the capacity is read through, or null to read the hosts. */
+	private PowerPlacementOverlay placementOverlay;
+
+	/** Whether the index matches the hosts. */
+	private boolean valid;
+
+	/** The number of builds, which identifies the positions of the current build. */
+	private int generation;
+
+	/**
+	 * Instantiates a new PowerHostCapacityIndex.
+	 */
+	public PowerHostCapacityIndex() {
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b] = new BitSet();
+		}
+	}
+
+	/**
+	 * Indexes the given hosts, in their current order.
+	 *
+	 * @param hostList the hosts
+	 */
+	public void build(List<? extends PowerHost> hostList) {
+		build(hostList, null);
+	}
+
+	/**
+	 * Indexes the given hosts, in their current order, with their capacity in the planned state
+	 * of a placement overlay.
+	 *
+	 * @param hostList the hosts
+	 * @param placementOverlay the placement overlay, or null to index the live capacity
+	 */
+	public void build(List<? extends PowerHost> hostList, PowerPlacementOverlay placementOverlay) {
+		this.placementOverlay = placementOverlay;
+		int n = hostList.size();
+		hosts.clear();
+		positions.clear();
+		for (BitSet bucket : buckets) {
+			bucket.clear();
+		}
+		if (availableMips.length < n) {
+			availableMips = new double[n];
+			availableRam = new int[n];
+			hostBuckets = new int[n];
+		}
+		for (int position = 0; position < n; position++) {
+			PowerHost host = hostList.get(position);
+			hosts.add(host);
+			positions.put(host, position);
+			hostBuckets[position] = -1;
+			index(position);
+		}
+		generation++;
+		valid = true;
+	}
+
+	/**
+	 * Updates the capacity of a host whose allocation changed.
+	 *
+	 * @param host the host
+	 */
+	public void update(Host host) {
+		if (!valid) {
+			return;
+		}
+		Integer position = positions.get(host);
+		if (position != null) {
+			index(position);
+		}
+	}
+
+	/**
+	 * Reads the capacity of the host at a position and moves it to its bucket.
+	 *
+	 * @param position the position of the host
+	 */
+	private void index(int position) {
+		PowerHost host = hosts.get(position);
+		double mips;
+		if (placementOverlay == null) {
+			mips = host.getAvailableMips();
+			availableRam[position] = host.getRamProvisioner().getAvailableRam();
+		} else {
+			mips = placementOverlay.getAvailableMips(host);
+			availableRam[position] = (int) placementOverlay.getAvailableRam(host);
+		}
+		availableMips[position] = mips;
+		int bucket = getBucket(mips);
+		if (bucket != hostBuckets[position]) {
+			if (hostBuckets[position] >= 0) {
+				buckets[hostBuckets[position]].clear(position);
+			}
+			buckets[bucket].set(position);
+			hostBuckets[position] = bucket;
+		}
+	}
+
+	/**
+	 * Gets the bucket of an amount of MIPS. The bucket grows with the MIPS, so a host can only
+	 * hold a VM if its bucket is not lower than the bucket of the requested MIPS.
+	 *
+	 * @param mips the MIPS
+	 * @return the bucket
+	 */
+	private static int getBucket(double mips) {
+		if (!(mips >= 1)) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 1 + (int) (Math.log(mips) / Math.log(2)));
+	}
+
+	/**
+	 * Gets the hosts that may fit a VM, in host list order. The result shares the scratch
+	 * state of the index, so it must be consumed before the next query.
+	 *
+	 * @param vm the VM
+	 * @return the candidate hosts
+	 */
+	public Iterable<PowerHost> getCandidates(Vm vm) {
+		return getCandidates(vm, null);
+	}
+
+	/**
+	 * Gets the hosts that may fit a VM and are not excluded, in host list order. The excluded
+	 * hosts are cleared from the candidates in one bit set operation, before the capacity checks.
+	 * The result shares the scratch state of the index, so it must be consumed before the next
+	 * query.
+	 *
+	 * @param vm the VM
+	 * @param excludedHosts the excluded hosts, over the current build of the index, or null
+	 * @return the candidate hosts
+	 */
+	public Iterable<PowerHost> getCandidates(Vm vm, PowerHostMask excludedHosts) {
+		final double mips = vm.getCurrentRequestedTotalMips();
+		final int ram = vm.getCurrentRequestedRam();
+		candidates.clear();
+		for (int b = getBucket(mips); b < BUCKETS; b++) {
+			candidates.or(buckets[b]);
+		}
+		Integer current = vm.getHost() == null ? null : positions.get(vm.getHost());
+		if (current != null) {
+			candidates.set(current);
+		}
+		if (excludedHosts != null) {
+			excludedHosts.clearMasked(candidates);
+		}
+		final int currentPosition = current == null ? -1 : current;
+		return new Iterable<PowerHost>() {
+
+			@Override
+			public Iterator<PowerHost> iterator() {
+				return new Iterator<PowerHost>() {
+
+					private int next = advance(0);
+
+					private int advance(int from) {
+						int position = candidates.nextSetBit(from);
+						while (position >= 0
+								&& position != currentPosition
+								&& (availableMips[position] < mips || availableRam[position] < ram)) {
+							position = candidates.nextSetBit(position + 1);
+						}
+						return position;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next >= 0;
+					}
+
+					@Override
+					public PowerHost next() {
+						if (next < 0) {
+							throw new NoSuchElementException();
+						}
+						PowerHost host = hosts.get(next);
+						next = advance(next + 1);
+						return host;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Gets the position of a host in the current build.
+	 *
+	 * @param host the host
+	 * @return the position, or -1 if the host is not indexed
+	 */
+	public int getPosition(Host host) {
+		Integer position = positions.get(host);
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * Gets the host at a position of the current build.
+	 *
+	 * @param position the position
+	 * @return the host
+	 */
+	public PowerHost getHost(int position) {
+		return hosts.get(position);
+	}
+
+	/**
+	 * Gets the number of indexed hosts.
+	 *
+	 * @return the number of hosts
+	 */
+	public int getNumberOfHosts() {
+		return hosts.size();
+	}
+
+	/**
+	 * Gets the number of builds of the index, which changes whenever the positions may change.
+	 *
+	 * @return the build generation
+	 * @see PowerHostMask
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Checks whether the index matches the hosts.
+	 *
+	 * @return true, if the index can be queried
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Marks the index as not matching the hosts anymore, until the next build.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+}
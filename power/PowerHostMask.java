@@ -0,0 +1,247 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.Host;
+
+/**
+ * A set of hosts kept as a bit set over the positions of the hosts in a
+ * {@link PowerHostCapacityIndex}, used for the excluded hosts of the placement scans. Testing a
+ * position is a bit test, masks combine with {@link #or(PowerHostMask)} and
+ * {@link #andNot(PowerHostMask)}, and the capacity index drops the masked hosts from the
+ * candidates of a VM in bulk.
+ *
+ * <br/>A mask is meant to be kept by its owner and cleared for every optimization, once the index
+ * is built, so that no set is allocated per interval. The positions are those of the build the
+ * mask was cleared after: using a mask after the index was rebuilt, e.g. on a reordered host
+ * list, throws an {@link IllegalStateException}. Hosts not in the index are never contained and
+ * cannot be added.
+ */
+public class PowerHostMask extends AbstractSet<Host> {
+
+	/** The index giving the positions of the hosts. */
+	private final PowerHostCapacityIndex index;
+
+	/** The positions of the hosts of the mask. */
+	private final BitSet bits = new BitSet();
+
+	/** The build of the index the positions refer to. */
+	private int generation;
+
+	/**
+	 * Instantiates a new empty PowerHostMask over the current build of an index.
+	 *
+	 * @param index the capacity index giving the positions of the hosts
+	 */
+	public PowerHostMask(PowerHostCapacityIndex index) {
+		this.index = index;
+		generation = index.getGeneration();
+	}
+
+	/**
+	 * Empties the mask and binds it to the current build of the index.
+	 */
+	@Override
+	public void clear() {
+		bits.clear();
+		generation = index.getGeneration();
+	}
+
+	/**
+	 * Adds a host.
+	 *
+	 * @param host the host
+	 * @return true, if the host was not in the mask
+	 * @throws IllegalArgumentException if the host is not in the index
+	 */
+	@Override
+	public boolean add(Host host) {
+		int position = getPosition(host);
+		if (position < 0) {
+			throw new IllegalArgumentException("Host #" + host.getId() + " is not indexed");
+		}
+		if (bits.get(position)) {
+			return false;
+		}
+		bits.set(position);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Host> hosts) {
+		if (hosts instanceof PowerHostMask) {
+			int size = size();
+			or((PowerHostMask) hosts);
+			return size() != size;
+		}
+		return super.addAll(hosts);
+	}
+
+	@Override
+	public boolean remove(Object host) {
+		int position = host instanceof Host ? getPosition((Host) host) : -1;
+		if (position < 0 || !bits.get(position)) {
+			return false;
+		}
+		bits.clear(position);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object host) {
+		if (!(host instanceof Host)) {
+			return false;
+		}
+		int position = getPosition((Host) host);
+		return position >= 0 && bits.get(position);
+	}
+
+	/**
+	 * Checks whether the host at a position of the index is in the mask.
+	 *
+	 * @param position the position
+	 * @return true, if the host is in the mask
+	 */
+	public boolean get(int position) {
+		checkGeneration();
+		return bits.get(position);
+	}
+
+	/**
+	 * Gets the first position, from a given one on, whose host is not in the mask.
+	 *
+	 * @param from the first position checked
+	 * @return the position, which may be past the indexed hosts
+	 */
+	public int nextClearPosition(int from) {
+		checkGeneration();
+		return bits.nextClearBit(from);
+	}
+
+	/**
+	 * Adds the hosts of another mask over the same build of the index.
+	 *
+	 * @param mask the mask
+	 */
+	public void or(PowerHostMask mask) {
+		checkSameIndex(mask);
+		bits.or(mask.bits);
+	}
+
+	/**
+	 * Removes the hosts of another mask over the same build of the index.
+	 *
+	 * @param mask the mask
+	 */
+	public void andNot(PowerHostMask mask) {
+		checkSameIndex(mask);
+		bits.andNot(mask.bits);
+	}
+
+	/**
+	 * Keeps only the hosts also in another mask over the same build of the index.
+	 *
+	 * @param mask the mask
+	 */
+	public void and(PowerHostMask mask) {
+		checkSameIndex(mask);
+		bits.and(mask.bits);
+	}
+
+	/**
+	 * Removes the masked positions from a bit set over the positions of the index.
+	 *
+	 * @param positions the positions
+	 */
+	void clearMasked(BitSet positions) {
+		checkGeneration();
+		positions.andNot(bits);
+	}
+
+	@Override
+	public int size() {
+		checkGeneration();
+		return bits.cardinality();
+	}
+
+	@Override
+	public Iterator<Host> iterator() {
+		checkGeneration();
+		return new Iterator<Host>() {
+
+			private int next = bits.nextSetBit(0);
+
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Host next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = bits.nextSetBit(next + 1);
+				return index.getHost(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				bits.clear(last);
+				last = -1;
+			}
+		};
+	}
+
+	/**
+	 * Gets the position of a host in the index.
+	 *
+	 * @param host the host
+	 * @return the position, or -1 if the host is not indexed
+	 */
+	private int getPosition(Host host) {
+		checkGeneration();
+		return index.getPosition(host);
+	}
+
+	/**
+	 * Checks that the index was not rebuilt since the mask was cleared.
+	 */
+	private void checkGeneration() {
+		if (generation != index.getGeneration()) {
+			throw new IllegalStateException("The host capacity index was rebuilt since the mask was cleared");
+		}
+	}
+
+	/**
+	 * Checks that another mask is over the same build of the same index.
+	 *
+	 * @param mask the mask
+	 */
+	private void checkSameIndex(PowerHostMask mask) {
+		checkGeneration();
+		mask.checkGeneration();
+		if (mask.index != index) {
+			throw new IllegalArgumentException("The masks are not over the same host capacity index");
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The host selection strategies shipped with the power package, looked up by name. They are
+ * stateless, so a single instance of each is shared.
+ */
+public final class PowerHostSelectionStrategies {
+
+	/**
+	 * Power aware best fit decreasing: the host whose power increases the least.
+	 */
+	public static final PowerHostSelectionStrategy PABFD = new PowerDiffStrategy("pabfd", false);
+
+	/**
+	 * Modified worst fit decreasing: the host whose power increases the most. Hosts whose power
+	 * does not increase are rejected.
+	 */
+	public static final PowerHostSelectionStrategy MWFDVP = new PowerDiffStrategy("mwfdvp", true);
+
+	/**
+	 * Modified worst fit for clustered VMs, the same rule as {@link #MWFDVP}.
+	 */
+	public static final PowerHostSelectionStrategy MWFVP_C = new PowerDiffStrategy("mwfvp_c", true);
+
+	/**
+	 * Second worst fit decreasing: the first host, in host list order, whose power increases.
+	 * This is the host the former second worst fit scan returned: it kept the first such host
+	 * as its second worst once a later host beat it, and returned it at once.
+	 */
+	public static final PowerHostSelectionStrategy SWFDVP = new PowerHostSelectionStrategy() {
+
+		@Override
+		public String getName() {
+			return "swfdvp";
+		}
+
+		@Override
+		public boolean isScannedByAvailablePower() {
+			return false;
+		}
+
+		@Override
+		public boolean isFirstFit() {
+			return true;
+		}
+
+		@Override
+		public double getScore(PowerHost host, double powerAfterAllocation) {
+			if (powerAfterAllocation == -1 || !(powerAfterAllocation - host.getPower() > Double.MIN_VALUE)) {
+				return Double.NaN;
+			}
+			return 0;
+		}
+	};
+
+	/**
+	 * First fit decreasing on the host of least available power: the hosts are scanned by
+	 * available power increasing, and the first one staying under its maximum power is selected.
+	 */
+	public static final PowerHostSelectionStrategy FFDHDVP = new PowerHostSelectionStrategy() {
+
+		@Override
+		public String getName() {
+			return "ffdhdvp";
+		}
+
+		@Override
+		public boolean isScannedByAvailablePower() {
+			return true;
+		}
+
+		@Override
+		public boolean isFirstFit() {
+			return true;
+		}
+
+		@Override
+		public double getScore(PowerHost host, double powerAfterAllocation) {
+			return powerAfterAllocation != -1 && powerAfterAllocation < host.getMaxPower() ? 0 : Double.NaN;
+		}
+	};
+
+	/** The strategies, in lookup order. */
+	private static final List<PowerHostSelectionStrategy> STRATEGIES;
+
+	static {
+		List<PowerHostSelectionStrategy> strategies = new ArrayList<PowerHostSelectionStrategy>();
+		strategies.add(PABFD);
+		strategies.add(MWFDVP);
+		strategies.add(SWFDVP);
+		strategies.add(FFDHDVP);
+		strategies.add(MWFVP_C);
+		STRATEGIES = Collections.unmodifiableList(strategies);
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private PowerHostSelectionStrategies() {
+	}
+
+	/**
+	 * Gets the host selection strategy of the given name: <tt>pabfd</tt>, <tt>mwfdvp</tt>,
+	 * <tt>swfdvp</tt>, <tt>ffdhdvp</tt> or <tt>mwfvp_c</tt>.
+	 *
+	 * @param name the name of the strategy
+	 * @return the strategy
+	 * @throws IllegalArgumentException if no strategy has this name
+	 */
+	public static PowerHostSelectionStrategy forName(String name) {
+		for (PowerHostSelectionStrategy strategy : STRATEGIES) {
+			if (strategy.getName().equals(name)) {
+				return strategy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown host selection strategy: " + name);
+	}
+
+	/**
+	 * Gets all the host selection strategies.
+	 *
+	 * @return the strategies
+	 */
+	public static List<PowerHostSelectionStrategy> getStrategies() {
+		return STRATEGIES;
+	}
+
+	/**
+	 * A strategy scoring the hosts by the increase of their power, in host list order.
+	 */
+	private static class PowerDiffStrategy implements PowerHostSelectionStrategy {
+
+		/** The name of the strategy. */
+		private final String name;
+
+		/** Whether the greatest power increase wins. */
+		private final boolean worstFit;
+
+		/**
+		 * Instantiates a new PowerDiffStrategy.
+		 *
+		 * @param name the name of the strategy
+		 * @param worstFit true if the greatest power increase wins, false for the least
+		 */
+		public PowerDiffStrategy(String name, boolean worstFit) {
+			this.name = name;
+			this.worstFit = worstFit;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean isScannedByAvailablePower() {
+			return false;
+		}
+
+		@Override
+		public boolean isFirstFit() {
+			return false;
+		}
+
+		@Override
+		public double getScore(PowerHost host, double powerAfterAllocation) {
+			if (powerAfterAllocation == -1) {
+				return Double.NaN;
+			}
+			double powerDiff = powerAfterAllocation - host.getPower();
+			if (!worstFit) {
+				return powerDiff;
+			}
+			// the former worst fit scans started from Double.MIN_VALUE
+			return powerDiff > Double.MIN_VALUE ? -powerDiff : Double.NaN;
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+/**
+ * A rule selecting the destination host of a VM among the hosts that can take it without being
+ * over utilized. The scan itself is run by the allocation policy, which only asks the strategy
+ * for the order of the scan and for the score of every accepted host; the host of least score
+ * wins, ties going to the host met first. Implementations are looked up by name through
+ * {@link PowerHostSelectionStrategies#forName(String)}.
+ *
+ * @see PowerVmAllocationPolicyMigrationAbstract#findHost(org.cloudbus.cloudsim.Vm, java.util.Set,
+ *      PowerHostSelectionStrategy)
+ */
+public interface PowerHostSelectionStrategy {
+
+	/**
+	 * Gets the name the strategy is selected by.
+	 *
+	 * @return the name
+	 */
+	String getName();
+
+	/**
+	 * Checks whether the hosts are scanned by available power increasing, instead of in host
+	 * list order.
+	 *
+	 * @return true, if the hosts are scanned by available power
+	 */
+	boolean isScannedByAvailablePower();
+
+	/**
+	 * Checks whether the scan stops at the first host scored, that is whether the scores only
+	 * accept or reject hosts.
+	 *
+	 * @return true, if the first host accepted is selected
+	 */
+	boolean isFirstFit();
+
+	/**
+	 * Scores a host that can take the VM without being over utilized. The host is not changed.
+	 *
+	 * @param host the host
+	 * @param powerAfterAllocation the power of the host with the VM placed on it, or -1 if its
+	 *            utilization would not be between 0 and 1
+	 * @return the score, lower is better, or NaN to reject the host
+	 */
+	double getScore(PowerHost host, double powerAfterAllocation);
+
+}
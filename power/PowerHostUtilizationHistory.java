@@ -11,6 +11,7 @@ package org.cloudbus.cloudsim.power;
 import java.util.List;
 
 import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmScheduler;
 import org.cloudbus.cloudsim.power.models.PowerModel;
 import org.cloudbus.cloudsim.provisioners.BwProvisioner;
@@ -64,11 +65,27 @@ public class PowerHostUtilizationHistory extends PowerHost {
 	 * @return the host CPU utilization percentage history
 	 */
 	protected double[] getUtilizationHistory() {
+		return getUtilizationHistory(this.<Vm> getVmList());
+	}
+
+	/**
+	 * Gets the CPU utilization percentage history the host would have with a given list of VMs,
+	 * e.g. its VMs in a planned state. The history of every VM is scaled by its MIPS share of
+	 * the host.
+	 * 
+	 * @param vms the VMs
+	 * @return the host CPU utilization percentage history
+	 */
+	protected double[] getUtilizationHistory(List<? extends Vm> vms) {
 		double[] utilizationHistory = new double[PowerVm.HISTORY_LENGTH];
 		double hostMips = getTotalMips();
-		for (PowerVm vm : this.<PowerVm> getVmList()) {
-			for (int i = 0; i < vm.getUtilizationHistory().size(); i++) {
-				utilizationHistory[i] += vm.getUtilizationHistory().get(i) * vm.getMips() / hostMips;
+		for (Vm vm : vms) {
+			if (!(vm instanceof PowerVm)) {
+				continue;
+			}
+			List<Double> vmUtilizationHistory = ((PowerVm) vm).getUtilizationHistory();
+			for (int i = 0; i < vmUtilizationHistory.size(); i++) {
+				utilizationHistory[i] += vmUtilizationHistory.get(i) * vm.getMips() / hostMips;
 			}
 		}
 		return MathUtil.trimZeroTail(utilizationHistory);
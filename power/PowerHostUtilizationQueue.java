@@ -0,0 +1,118 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.Host;
+
+/**
+ * A min-heap of the under-utilized host candidates by CPU utilization, used by the consolidation
+ * loop to take the least utilized host that is not excluded yet. Only hosts whose CPU utilization
+ * is strictly between 0 and 1 are candidates; hosts of the same utilization are taken in host
+ * list order, as by a scan keeping the first minimum.
+ *
+ * <br/>The heap is built once per interval by {@link #build(List)}, in O(H log H). Excluded
+ * hosts are dropped lazily, when they reach the top of the heap, so excluding a host costs
+ * nothing and every {@link #poll(Set)} costs O(log H) per host it drops. The key is the utilization of the
+ * live host at the build, which tentative placements of a placement overlay do not change; the
+ * heap is built again if the hosts themselves change.
+ */
+public class PowerHostUtilizationQueue {
+
+	/** The hosts of the current build, by position. */
+	private final List<PowerHost> hosts = new ArrayList<PowerHost>();
+
+	/** The CPU utilization every host is keyed by. */
+	private double[] utilizations = new double[0];
+
+	/** The positions of the candidate hosts, by utilization and position. */
+	private final PriorityQueue<Integer> queue = new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+
+		@Override
+		public int compare(Integer a, Integer b) {
+			int result = Double.compare(utilizations[a], utilizations[b]);
+			if (result == 0) {
+				result = a.compareTo(b);
+			}
+			return result;
+		}
+	});
+
+	/**
+	 * Builds the heap over the candidate hosts of a host list.
+	 *
+	 * @param hostList the hosts, in host list order
+	 */
+	public void build(List<? extends PowerHost> hostList) {
+		hosts.clear();
+		queue.clear();
+		hosts.addAll(hostList);
+		int n = hosts.size();
+		if (utilizations.length < n) {
+			utilizations = new double[n];
+		}
+		for (int position = 0; position < n; position++) {
+			utilizations[position] = hosts.get(position).getUtilizationOfCpu();
+			if (isCandidate(utilizations[position])) {
+				queue.add(position);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the least utilized candidate host that is not excluded. The excluded
+	 * hosts met on the way are dropped from the heap.
+	 *
+	 * @param excludedHosts the excluded hosts
+	 * @return the host, or null if no candidate is left
+	 */
+	public PowerHost poll(Set<? extends Host> excludedHosts) {
+		while (!queue.isEmpty()) {
+			int position = queue.poll();
+			PowerHost host = hosts.get(position);
+			if (!excludedHosts.contains(host)) {
+				return host;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the hosts of the heap are all taken or dropped.
+	 *
+	 * @return true, if no candidate is left
+	 */
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Drops the hosts of the current build.
+	 */
+	public void clear() {
+		hosts.clear();
+		queue.clear();
+	}
+
+	/**
+	 * Checks whether a host of a given CPU utilization is an under-utilized host candidate.
+	 *
+	 * @param utilization the CPU utilization
+	 * @return true, if the utilization is strictly between 0 and 1
+	 */
+	private static boolean isCandidate(double utilization) {
+		return utilization > 0 && utilization < 1;
+	}
+
+}
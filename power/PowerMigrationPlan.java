@@ -0,0 +1,291 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A plan of VM migrations, kept in parallel arrays instead of one map per migration: the VM, the
+ * source and target hosts and the estimated duration of every migration, in plan order. The hosts
+ * are stored as int positions in a host table of the plan, which holds every host the plan
+ * refers to once. Migrations are read by index, from 0 to {@link #size()} - 1.
+ *
+ * <br/>A plan grows by {@link #add(Vm, Host)} and {@link #addAll(PowerMigrationPlan)}, and is
+ * cut back to an earlier {@link #size()} by {@link #rollback(int)}, e.g. when the VMs of a host
+ * cannot all be placed. {@link #toMigrationMap()} and {@link #fromMigrationMap(List)} convert
+ * from and to the migration maps returned by the VM allocation policies, lists of maps from "vm"
+ * and "host" to the VM and its target host.
+ */
+public class PowerMigrationPlan {
+
+	/** The initial capacity of the arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The VM of every migration. */
+	private Vm[] vms = new Vm[INITIAL_CAPACITY];
+
+	/** The position of the source host of every migration, or -1 for a VM not on a host. */
+	private int[] sourceHosts = new int[INITIAL_CAPACITY];
+
+	/** The position of the target host of every migration. */
+	private int[] targetHosts = new int[INITIAL_CAPACITY];
+
+	/** The estimated duration of every migration. */
+	private double[] estimatedDurations = new double[INITIAL_CAPACITY];
+
+	/** The number of migrations. */
+	private int size;
+
+	/** The hosts the plan refers to, by position. */
+	private final List<Host> hosts = new ArrayList<Host>();
+
+	/** The position of every host the plan refers to. */
+	private final Map<Host, Integer> hostPositions = new IdentityHashMap<Host, Integer>();
+
+	/**
+	 * Estimates the duration of the migration of a VM as its RAM over half the bandwidth of the
+	 * target host, the other half being left to the VM communication; around 16 seconds for 1024
+	 * MB over a 1 Gbit/s network.
+	 *
+	 * @param vm the vm
+	 * @param targetHost the target host
+	 * @return the estimated duration, in seconds
+	 */
+	public static double estimateDuration(Vm vm, Host targetHost) {
+		return vm.getRam() / ((double) targetHost.getBw() / (2 * 8000));
+	}
+
+	/**
+	 * Converts a migration map into a plan.
+	 *
+	 * @param migrationMap the migration map, a list of maps from "vm" and "host" to the VM and its
+	 *            target host
+	 * @return the plan
+	 */
+	public static PowerMigrationPlan fromMigrationMap(List<Map<String, Object>> migrationMap) {
+		PowerMigrationPlan plan = new PowerMigrationPlan();
+		for (Map<String, Object> migrate : migrationMap) {
+			plan.add((Vm) migrate.get("vm"), (Host) migrate.get("host"));
+		}
+		return plan;
+	}
+
+	/**
+	 * Appends the migration of a VM from its current host to a target host.
+	 *
+	 * @param vm the vm
+	 * @param targetHost the target host
+	 */
+	public void add(Vm vm, Host targetHost) {
+		add(vm, getPosition(vm.getHost()), getPosition(targetHost), estimateDuration(vm, targetHost));
+	}
+
+	/**
+	 * Appends the migrations of another plan, in their order.
+	 *
+	 * @param plan the plan
+	 */
+	public void addAll(PowerMigrationPlan plan) {
+		int n = plan.size;
+		ensureCapacity(size + n);
+		for (int i = 0; i < n; i++) {
+			add(plan.vms[i],
+					getPosition(plan.getSourceHost(i)),
+					getPosition(plan.getTargetHost(i)),
+					plan.estimatedDurations[i]);
+		}
+	}
+
+	/**
+	 * Appends a migration.
+	 *
+	 * @param vm the vm
+	 * @param sourceHost the position of the source host, or -1
+	 * @param targetHost the position of the target host
+	 * @param estimatedDuration the estimated duration
+	 */
+	private void add(Vm vm, int sourceHost, int targetHost, double estimatedDuration) {
+		ensureCapacity(size + 1);
+		vms[size] = vm;
+		sourceHosts[size] = sourceHost;
+		targetHosts[size] = targetHost;
+		estimatedDurations[size] = estimatedDuration;
+		size++;
+	}
+
+	/**
+	 * Drops the migrations appended after the plan had the given size.
+	 *
+	 * @param size the size to go back to, as returned by {@link #size()} earlier
+	 */
+	public void rollback(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IllegalArgumentException("Cannot roll a plan of " + this.size + " migrations back to " + size);
+		}
+		Arrays.fill(vms, size, this.size, null);
+		this.size = size;
+	}
+
+	/**
+	 * Drops all the migrations.
+	 */
+	public void clear() {
+		rollback(0);
+		hosts.clear();
+		hostPositions.clear();
+	}
+
+	/**
+	 * Gets the number of migrations.
+	 *
+	 * @return the number of migrations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether the plan has no migration.
+	 *
+	 * @return true, if the plan is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the VM of a migration.
+	 *
+	 * @param index the index of the migration
+	 * @return the vm
+	 */
+	public Vm getVm(int index) {
+		checkIndex(index);
+		return vms[index];
+	}
+
+	/**
+	 * Gets the host a VM was on when its migration was planned.
+	 *
+	 * @param index the index of the migration
+	 * @return the source host, or null if the VM was not on a host
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Host> T getSourceHost(int index) {
+		checkIndex(index);
+		return sourceHosts[index] < 0 ? null : (T) hosts.get(sourceHosts[index]);
+	}
+
+	/**
+	 * Gets the target host of a migration.
+	 *
+	 * @param index the index of the migration
+	 * @return the target host
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Host> T getTargetHost(int index) {
+		checkIndex(index);
+		return (T) hosts.get(targetHosts[index]);
+	}
+
+	/**
+	 * Gets the estimated duration of a migration.
+	 *
+	 * @param index the index of the migration
+	 * @return the estimated duration, in seconds
+	 * @see #estimateDuration(Vm, Host)
+	 */
+	public double getEstimatedDuration(int index) {
+		checkIndex(index);
+		return estimatedDurations[index];
+	}
+
+	/**
+	 * Gets a migration as an entry of a migration map.
+	 *
+	 * @param index the index of the migration
+	 * @return a map from "vm" and "host" to the VM and its target host
+	 */
+	public Map<String, Object> getMigration(int index) {
+		Map<String, Object> migrate = new HashMap<String, Object>();
+		migrate.put("vm", getVm(index));
+		migrate.put("host", getTargetHost(index));
+		return migrate;
+	}
+
+	/**
+	 * Converts the plan into a migration map, for the callers of
+	 * {@link org.cloudbus.cloudsim.VmAllocationPolicy#optimizeAllocation(List)}.
+	 *
+	 * @return the migration map, in plan order
+	 */
+	public List<Map<String, Object>> toMigrationMap() {
+		List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
+		for (int i = 0; i < size; i++) {
+			migrationMap.add(getMigration(i));
+		}
+		return migrationMap;
+	}
+
+	/**
+	 * Gets the position of a host in the host table, adding it on its first use.
+	 *
+	 * @param host the host, or null
+	 * @return the position, or -1 for null
+	 */
+	private int getPosition(Host host) {
+		if (host == null) {
+			return -1;
+		}
+		Integer position = hostPositions.get(host);
+		if (position == null) {
+			position = hosts.size();
+			hosts.add(host);
+			hostPositions.put(host, position);
+		}
+		return position;
+	}
+
+	/**
+	 * Grows the arrays to hold at least the given number of migrations.
+	 *
+	 * @param capacity the capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= vms.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, 2 * vms.length);
+		vms = Arrays.copyOf(vms, newCapacity);
+		sourceHosts = Arrays.copyOf(sourceHosts, newCapacity);
+		targetHosts = Arrays.copyOf(targetHosts, newCapacity);
+		estimatedDurations = Arrays.copyOf(estimatedDurations, newCapacity);
+	}
+
+	/**
+	 * Checks that a migration index is in the plan.
+	 *
+	 * @param index the index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " of a plan of " + size + " migrations");
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A copy-on-write view of the VM placement, used by the migration policies to plan VM moves
+ * without touching the hosts. The overlay records, for the hosts touched by the plan only,
+ * the VMs tentatively removed from and placed on the host, together with the MIPS, RAM,
+ * bandwidth and storage they free or claim. Every query on an untouched host reads the live
+ * host, so planning costs grow with the number of tentative moves, not with the fleet size.
+ *
+ * <br/>A removed VM frees the resources allocated to it on the host; a placed VM claims the
+ * resources it currently requests, as a VM created on the host would be allocated. Removing a
+ * VM that was placed by the plan cancels its placement.
+ *
+ * <br/>The overlay is discarded with {@link #clear()} once the plan is turned into a migration
+ * map; the hosts are never changed.
+ *
+ * @see PowerVmAllocationPolicyMigrationAbstract#optimizeAllocation(List)
+ */
+public class PowerPlacementOverlay {
+
+	/** The changes of the touched hosts. */
+	private final Map<Host, HostDelta> deltas = new IdentityHashMap<Host, HostDelta>();
+
+	/**
+	 * The tentative changes of one host.
+	 */
+	private static class HostDelta {
+
+		/** The VMs of the host removed by the plan. */
+		private final Set<Vm> removedVms = Collections.newSetFromMap(new IdentityHashMap<Vm, Boolean>());
+
+		/** The VMs placed on the host by the plan, in placement order. */
+		private final List<Vm> placedVms = new ArrayList<Vm>();
+
+		/** The MIPS freed minus the MIPS claimed. */
+		private double mips;
+
+		/** The MIPS freed minus the MIPS claimed by the VMs migrating in to the host. */
+		private double migratingInMips;
+
+		/** The RAM freed minus the RAM claimed. */
+		private long ram;
+
+		/** The bandwidth freed minus the bandwidth claimed. */
+		private long bw;
+
+		/** The storage freed minus the storage claimed. */
+		private long storage;
+
+	}
+
+	/**
+	 * Tentatively places a VM on a host.
+	 *
+	 * @param vm the vm
+	 * @param host the host
+	 */
+	public void place(Vm vm, Host host) {
+		HostDelta delta = getDelta(host);
+		if (delta.removedVms.remove(vm)) {
+			free(delta, host, vm, -1);
+			return;
+		}
+		delta.placedVms.add(vm);
+		claim(delta, host, vm, 1);
+	}
+
+	/**
+	 * Tentatively removes a VM from a host. Removing a VM placed by the plan cancels
+	 * the placement.
+	 *
+	 * @param vm the vm
+	 * @param host the host
+	 */
+	public void remove(Vm vm, Host host) {
+		HostDelta delta = getDelta(host);
+		if (delta.placedVms.remove(vm)) {
+			claim(delta, host, vm, -1);
+			return;
+		}
+		if (delta.removedVms.add(vm)) {
+			free(delta, host, vm, 1);
+		}
+	}
+
+	/**
+	 * Accounts for the resources a placed VM claims.
+	 *
+	 * @param delta the host changes
+	 * @param host the host
+	 * @param vm the vm
+	 * @param sign 1 to claim the resources, -1 to give them back
+	 */
+	private static void claim(HostDelta delta, Host host, Vm vm, int sign) {
+		delta.mips -= sign * vm.getCurrentRequestedTotalMips();
+		if (host.getVmsMigratingIn().contains(vm)) {
+			delta.migratingInMips -= sign * vm.getCurrentRequestedTotalMips();
+		}
+		delta.ram -= sign * vm.getCurrentRequestedRam();
+		delta.bw -= sign * vm.getCurrentRequestedBw();
+		delta.storage -= sign * vm.getSize();
+	}
+
+	/**
+	 * Accounts for the resources a removed VM frees.
+	 *
+	 * @param delta the host changes
+	 * @param host the host
+	 * @param vm the vm
+	 * @param sign 1 to free the resources, -1 to allocate them again
+	 */
+	private static void free(HostDelta delta, Host host, Vm vm, int sign) {
+		delta.mips += sign * host.getTotalAllocatedMipsForVm(vm);
+		if (host.getVmsMigratingIn().contains(vm)) {
+			delta.migratingInMips += sign * host.getTotalAllocatedMipsForVm(vm);
+		}
+		delta.ram += sign * host.getRamProvisioner().getAllocatedRamForVm(vm);
+		delta.bw += sign * host.getBwProvisioner().getAllocatedBwForVm(vm);
+		delta.storage += sign * vm.getSize();
+	}
+
+	/**
+	 * Gets the changes of a host, creating them on the first change.
+	 *
+	 * @param host the host
+	 * @return the host changes
+	 */
+	private HostDelta getDelta(Host host) {
+		HostDelta delta = deltas.get(host);
+		if (delta == null) {
+			delta = new HostDelta();
+			deltas.put(host, delta);
+		}
+		return delta;
+	}
+
+	/**
+	 * Gets the VMs of a host in the planned state: its VMs not removed by the plan, followed
+	 * by the VMs placed by the plan.
+	 *
+	 * @param host the host
+	 * @return the planned VM list; the live list of an untouched host, which must not be changed
+	 */
+	public <T extends Vm> List<T> getVmList(Host host) {
+		HostDelta delta = deltas.get(host);
+		if (delta == null) {
+			return host.getVmList();
+		}
+		List<T> vmList = new ArrayList<T>(host.getVmList().size() + delta.placedVms.size());
+		for (T vm : host.<T> getVmList()) {
+			if (!delta.removedVms.contains(vm)) {
+				vmList.add(vm);
+			}
+		}
+		for (Vm vm : delta.placedVms) {
+			@SuppressWarnings("unchecked")
+			T placedVm = (T) vm;
+			vmList.add(placedVm);
+		}
+		return vmList;
+	}
+
+	/**
+	 * Checks whether a VM is placed on a host by the plan.
+	 *
+	 * @param vm the vm
+	 * @param host the host
+	 * @return true, if the VM is placed on the host by the plan
+	 */
+	public boolean isPlaced(Vm vm, Host host) {
+		HostDelta delta = deltas.get(host);
+		return delta != null && delta.placedVms.contains(vm);
+	}
+
+	/**
+	 * Gets the MIPS allocated to a VM on a host in the planned state: the requested MIPS of a
+	 * VM placed by the plan, the allocated MIPS otherwise.
+	 *
+	 * @param host the host
+	 * @param vm the vm
+	 * @return the allocated MIPS
+	 */
+	public double getTotalAllocatedMipsForVm(Host host, Vm vm) {
+		if (isPlaced(vm, host)) {
+			return vm.getCurrentRequestedTotalMips();
+		}
+		return host.getTotalAllocatedMipsForVm(vm);
+	}
+
+	/**
+	 * Gets the total MIPS allocated to the VMs of a host in the planned state, as summed by
+	 * {@link #getTotalAllocatedMipsForVm(Host, Vm)} over {@link #getVmList(Host)}.
+	 *
+	 * @param host the host
+	 * @return the allocated MIPS
+	 * @see PowerHost#getAllocatedMipsOfVms()
+	 */
+	public double getAllocatedMipsOfVms(PowerHost host) {
+		HostDelta delta = deltas.get(host);
+		return host.getAllocatedMipsOfVms() - (delta == null ? 0 : delta.mips);
+	}
+
+	/**
+	 * Gets the total MIPS allocated to the VMs migrating in to a host in the planned state.
+	 *
+	 * @param host the host
+	 * @return the allocated MIPS
+	 * @see PowerHost#getAllocatedMipsOfMigratingInVms()
+	 */
+	public double getAllocatedMipsOfMigratingInVms(PowerHost host) {
+		HostDelta delta = deltas.get(host);
+		return host.getAllocatedMipsOfMigratingInVms() - (delta == null ? 0 : delta.migratingInMips);
+	}
+
+	/**
+	 * Gets the available MIPS of a host in the planned state.
+	 *
+	 * @param host the host
+	 * @return the available MIPS
+	 */
+	public double getAvailableMips(Host host) {
+		HostDelta delta = deltas.get(host);
+		return host.getAvailableMips() + (delta == null ? 0 : delta.mips);
+	}
+
+	/**
+	 * Gets the available RAM of a host in the planned state.
+	 *
+	 * @param host the host
+	 * @return the available RAM
+	 */
+	public long getAvailableRam(Host host) {
+		HostDelta delta = deltas.get(host);
+		return host.getRamProvisioner().getAvailableRam() + (delta == null ? 0 : delta.ram);
+	}
+
+	/**
+	 * Gets the available bandwidth of a host in the planned state.
+	 *
+	 * @param host the host
+	 * @return the available bandwidth
+	 */
+	public long getAvailableBw(Host host) {
+		HostDelta delta = deltas.get(host);
+		return host.getBwProvisioner().getAvailableBw() + (delta == null ? 0 : delta.bw);
+	}
+
+	/**
+	 * Checks whether a host has enough resources for a VM in the planned state, as
+	 * {@link Host#isSuitableForVm(Vm)} does on the live state.
+	 *
+	 * @param host the host
+	 * @param vm the vm
+	 * @return true, if the host is suitable for the VM
+	 */
+	public boolean isSuitableForVm(Host host, Vm vm) {
+		HostDelta delta = deltas.get(host);
+		if (delta == null) {
+			return host.isSuitableForVm(vm);
+		}
+		return host.getVmScheduler().getPeCapacity() >= vm.getCurrentRequestedMaxMips()
+				&& host.getVmScheduler().getAvailableMips() + delta.mips >= vm.getCurrentRequestedTotalMips()
+				&& host.getRamProvisioner().getAvailableRam() + delta.ram >= vm.getCurrentRequestedRam()
+				&& host.getBwProvisioner().getAvailableBw() + delta.bw >= vm.getCurrentRequestedBw();
+	}
+
+	/**
+	 * Checks whether a host can accommodate a VM in the planned state, storage included.
+	 *
+	 * @param host the host
+	 * @param vm the vm
+	 * @return true, if the VM could be created on the host
+	 * @see PowerHost#canAccommodate(Vm)
+	 */
+	public boolean canAccommodate(PowerHost host, Vm vm) {
+		HostDelta delta = deltas.get(host);
+		if (delta == null) {
+			return host.canAccommodate(vm);
+		}
+		return isSuitableForVm(host, vm) && host.getStorage() + delta.storage >= vm.getSize();
+	}
+
+	/**
+	 * Gets the CPU utilization percentage of a host in the planned state, as requested by its
+	 * VMs, with a candidate VM placed on it.
+	 *
+	 * @param host the host
+	 * @param vm the candidate vm, or null for the planned VMs only
+	 * @return the projected CPU utilization, which may exceed 1
+	 * @see PowerHost#getProjectedUtilizationOfCpu(Vm)
+	 */
+	public double getProjectedUtilizationOfCpu(PowerHost host, Vm vm) {
+		if (!deltas.containsKey(host)) {
+			return host.getProjectedUtilizationOfCpu(vm);
+		}
+		double totalRequestedMips = 0;
+		for (Vm hostVm : getVmList(host)) {
+			totalRequestedMips += hostVm.getCurrentRequestedTotalMips();
+		}
+		if (vm != null) {
+			totalRequestedMips += vm.getCurrentRequestedTotalMips();
+		}
+		return totalRequestedMips / host.getTotalMips();
+	}
+
+	/**
+	 * Checks whether the plan touched a host.
+	 *
+	 * @param host the host
+	 * @return true, if VMs were removed from or placed on the host
+	 */
+	public boolean isTouched(Host host) {
+		return deltas.containsKey(host);
+	}
+
+	/**
+	 * Gets the number of hosts touched by the plan.
+	 *
+	 * @return the number of touched hosts
+	 */
+	public int getNumberOfTouchedHosts() {
+		return deltas.size();
+	}
+
+	/**
+	 * Discards the plan.
+	 */
+	public void clear() {
+		deltas.clear();
+	}
+
+}
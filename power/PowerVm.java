@@ -41,6 +41,9 @@ public class PowerVm extends Vm {
 	/** The CPU utilization percentage history. */
 	private final List<Double> utilizationHistory = new LinkedList<Double>();
 
+	/** The number of values added to the CPU utilization percentage history. */
+	private long utilizationHistoryVersion;
+
 	/** The previous time that cloudlets were processed. */
 	private double previousTime;
 
@@ -166,6 +169,17 @@ public class PowerVm extends Vm {
 		if (getUtilizationHistory().size() > HISTORY_LENGTH) {
 			getUtilizationHistory().remove(HISTORY_LENGTH);
 		}
+		utilizationHistoryVersion++;
+	}
+
+	/**
+	 * Gets the version of the CPU utilization percentage history. It changes every time a value
+	 * is added, so values derived from the history can be cached until it changes.
+	 * 
+	 * @return the version of the CPU utilization percentage history
+	 */
+	public long getUtilizationHistoryVersion() {
+		return utilizationHistoryVersion;
 	}
 
 	/**
@@ -14,11 +14,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -30,7 +33,15 @@ import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.lists.HostList;
+import org.cloudbus.cloudsim.power.clustering.ClusterCountSelector;
+import org.cloudbus.cloudsim.power.clustering.ClusteringListener;
+import org.cloudbus.cloudsim.power.clustering.KMeansClusterer;
+import org.cloudbus.cloudsim.power.clustering.KMeansClusteringAlgorithm;
+import org.cloudbus.cloudsim.power.clustering.KMeansWarmStart;
+import org.cloudbus.cloudsim.power.clustering.VmClusteringAlgorithm;
+import org.cloudbus.cloudsim.power.clustering.VmFeatureExtractor;
 import org.cloudbus.cloudsim.power.lists.PowerVmList;
+import org.cloudbus.cloudsim.power.models.PowerModels;
 import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
  
 
@@ -57,15 +68,6 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	/** The vm selection policy. */
 	private PowerVmSelectionPolicy vmSelectionPolicy;
 
-	/** A list of maps between a VM and the host where it is place.
-         * @todo This list of map is implemented in the worst way.
-         * It should be used just a Map<Vm, Host> to find out 
-         * what PM is hosting a given VM.
-         */
-
-	
-	private final List<Map<String, Object>> savedAllocation = new ArrayList<Map<String, Object>>();
-
 	/** A map of CPU utilization history (in percentage) for each host,
          where each key is a host id and each value is the CPU utilization percentage history.*/
 	private final Map<Integer, List<Double>> utilizationHistory = new HashMap<Integer, List<Double>>();
@@ -109,6 +111,107 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 
 	private int k;
 
+	/** The k-means engine, whose buffers are reused across optimization intervals. */
+	private final KMeansClusterer clusterer = new KMeansClusterer();
+
+	/** The builder of the feature vectors clustered by k-means. */
+	private VmFeatureExtractor featureExtractor = new VmFeatureExtractor();
+
+	/** The selector of the number of clusters, or null to use the MIPS ratio heuristic. */
+	private ClusterCountSelector clusterCountSelector = new ClusterCountSelector();
+
+	/** The algorithm clustering the VMs to migrate. */
+	private VmClusteringAlgorithm clusteringAlgorithm = new KMeansClusteringAlgorithm();
+
+	/** The tentative VM moves of the current optimization, on top of the live placement. */
+	private PowerPlacementOverlay placementOverlay = new PowerPlacementOverlay();
+
+	/** The index of the hosts by residual capacity, valid during an optimization only. */
+	private final PowerHostCapacityIndex hostCapacityIndex = new PowerHostCapacityIndex();
+
+	/** The over-utilized hosts of the current optimization, over the capacity index. */
+	private final PowerHostMask overUtilizedHostMask = new PowerHostMask(hostCapacityIndex);
+
+	/** The hosts excluded from the VM placements of the under-utilized hosts. */
+	private final PowerHostMask newVmPlacementHostMask = new PowerHostMask(hostCapacityIndex);
+
+	/** The hosts excluded from the search of the next under-utilized host. */
+	private final PowerHostMask underUtilizedHostMask = new PowerHostMask(hostCapacityIndex);
+
+	/** The ordering of the hosts by available power, read by the FFDHDVP placement. */
+	private final PowerHostAvailablePowerIndex hostPowerIndex = new PowerHostAvailablePowerIndex();
+
+	/** The default number of hosts from which the placement scans run in parallel. */
+	public static final int DEFAULT_PARALLEL_SCAN_THRESHOLD = 2000;
+
+	/** The largest number of hosts scanned by one task of a parallel placement scan. */
+	private static final int PARALLEL_SCAN_CHUNK = 256;
+
+	/** The pool running the parallel placement scans, created on the first parallel scan. */
+	private static ForkJoinPool parallelScanPool;
+
+	/** The number of hosts from which the placement scans run in parallel. */
+	private int parallelScanThreshold = DEFAULT_PARALLEL_SCAN_THRESHOLD;
+
+	/** The wall-clock time, in seconds, after which an optimization stops consolidating under-utilized hosts. */
+	private double consolidationTimeBudget = Double.POSITIVE_INFINITY;
+
+	/** The number of under-utilized hosts an optimization consolidates at most. */
+	private int consolidationOperationBudget = Integer.MAX_VALUE;
+
+	/** The {@link System#nanoTime()} at the start of the current optimization. */
+	private long optimizationStartTime;
+
+	/** The number of optimizations whose consolidation was stopped by its budget. */
+	private int budgetExhaustedOptimizations;
+
+	/** The engine placing the VMs of over-utilized hosts in one batch, or null to place them one by one. */
+	private PowerVmBatchPlacement batchPlacement;
+
+	/** The strategy choosing the hosts of new VMs and of the VMs of over-utilized hosts. */
+	private PowerHostSelectionStrategy hostSelectionStrategy = PowerHostSelectionStrategies.FFDHDVP;
+
+	/** The strategy choosing the hosts of the VMs of under-utilized hosts. */
+	private PowerHostSelectionStrategy underUtilizedHostSelectionStrategy = PowerHostSelectionStrategies.MWFDVP;
+
+	/** Whether clusters of the same size are placed by decreasing aggregate CPU demand. */
+	private boolean densityRankedByDemand = true;
+
+	/** The heap of the under-utilized host candidates of the consolidation loop. */
+	private final PowerHostUtilizationQueue underUtilizedHostQueue = new PowerHostUtilizationQueue();
+
+	/** The k-means state carried over between intervals for the VMs of over-utilized hosts. */
+	private final KMeansWarmStart overUtilizedWarmStart = new KMeansWarmStart();
+
+	/** The k-means state carried over between intervals for the VMs of under-utilized hosts. */
+	private final KMeansWarmStart underUtilizedWarmStart = new KMeansWarmStart();
+
+	/** The last over-utilization decision of every host, reused while the host state is unchanged. */
+	private final Map<Host, OverUtilizationDecision> overUtilizationDecisions =
+			new IdentityHashMap<Host, OverUtilizationDecision>();
+
+	/** The metric recorded by the last {@link #addHistoryEntry(HostDynamicWorkload, double)}. */
+	private double lastHistoryMetric = Double.NaN;
+
+	/** The number of over-utilization decisions reused. */
+	private long reusedOverUtilizationDecisions;
+
+	/**
+	 * The over-utilization decision of a host, with the metric recorded for it.
+	 */
+	private static class OverUtilizationDecision {
+
+		/** The state version of the host the decision was taken at. */
+		private long stateVersion;
+
+		/** Whether the host was over utilized. */
+		private boolean overUtilized;
+
+		/** The metric recorded in the metric history, e.g. the threshold. */
+		private double metric;
+
+	}
+
 	/**
 	 * Instantiates a new PowerVmAllocationPolicyMigrationAbstract.
 	 * 
@@ -128,9 +231,22 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @param vmList the vm list
 	 * 
 	 * @return the array list< hash map< string, object>>
+	 * @see #optimizeMigrationPlan(List)
 	 */
 	@Override
 	public List<Map<String, Object>> optimizeAllocation(List<? extends Vm> vmList) {
+		return optimizeMigrationPlan(vmList).toMigrationMap();
+	}
+
+	/**
+	 * Optimize allocation of the VMs according to current utilization, returning the migrations
+	 * as a plan instead of a migration map.
+	 * 
+	 * @param vmList the vm list
+	 * @return the migration plan
+	 */
+	public PowerMigrationPlan optimizeMigrationPlan(List<? extends Vm> vmList) {
+		optimizationStartTime = System.nanoTime();
 		ExecutionTimeMeasurer.start("optimizeAllocationTotal");
 
 		ExecutionTimeMeasurer.start("optimizeAllocationHostSelection");
@@ -140,62 +256,83 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 
 		printOverUtilizedHosts(overUtilizedHosts);
 
-		saveAllocation();
+		PowerPlacementOverlay placementOverlay = getPlacementOverlay();
+		placementOverlay.clear();
+		if (getVmSelectionPolicy() != null) {
+			getVmSelectionPolicy().setPlacementOverlay(placementOverlay);
+		}
 
 		ExecutionTimeMeasurer.start("optimizeAllocationVmSelection");
 		List<? extends Vm> vmsToMigrate = getVmsToMigrateFromHosts(overUtilizedHosts);
 		getExecutionTimeHistoryVmSelection().add(ExecutionTimeMeasurer.end("optimizeAllocationVmSelection"));
 
+		getHostCapacityIndex().build(this.<PowerHost> getHostList(), placementOverlay);
+		getHostPowerIndex().refresh(this.<PowerHost> getHostList());
+
 		Log.printLine("Reallocation of VMs from the over-utilized hosts:");
 		ExecutionTimeMeasurer.start("optimizeAllocationVmReallocation");
-		List<Map<String, Object>> migrationMap = getNewVmPlacement(vmsToMigrate, new HashSet<Host>(
-				overUtilizedHosts));
+		PowerHostMask overUtilizedHostMask = getOverUtilizedHostMask();
+		overUtilizedHostMask.clear();
+		overUtilizedHostMask.addAll(overUtilizedHosts);
+		PowerMigrationPlan migrationPlan = getNewVmPlacement(vmsToMigrate, overUtilizedHostMask);
 		getExecutionTimeHistoryVmReallocation().add(
 				ExecutionTimeMeasurer.end("optimizeAllocationVmReallocation"));
 		Log.printLine();
 
-		migrationMap.addAll(getMigrationMapFromUnderUtilizedHosts(overUtilizedHosts));
+		migrationPlan.addAll(getMigrationMapFromUnderUtilizedHosts(overUtilizedHosts));
 
-		restoreAllocation();
+		// the plan is in the migration plan, the hosts were never changed
+		placementOverlay.clear();
+		if (getVmSelectionPolicy() != null) {
+			getVmSelectionPolicy().setPlacementOverlay(null);
+		}
+		getHostCapacityIndex().invalidate();
 
 		getExecutionTimeHistoryTotal().add(ExecutionTimeMeasurer.end("optimizeAllocationTotal"));
 
-		return migrationMap;
+		return migrationPlan;
 	}
 
 	/**
 	 * Gets the migration map from under utilized hosts.
 	 * 
 	 * @param overUtilizedHosts the over utilized hosts
-	 * @return the migration map from under utilized hosts
+	 * @return the migration plan from under utilized hosts
 	 */
-	protected List<Map<String, Object>> getMigrationMapFromUnderUtilizedHosts(
+	protected PowerMigrationPlan getMigrationMapFromUnderUtilizedHosts(
 			List<PowerHostUtilizationHistory> overUtilizedHosts) {
-		List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
+		PowerMigrationPlan migrationPlan = new PowerMigrationPlan();
 		List<PowerHost> switchedOffHosts = getSwitchedOffHosts();
 
-		// over-utilized hosts + hosts that are selected to migrate VMs to from over-utilized hosts
-		Set<PowerHost> excludedHostsForFindingUnderUtilizedHost = new HashSet<PowerHost>();
-		excludedHostsForFindingUnderUtilizedHost.addAll(overUtilizedHosts);
-		excludedHostsForFindingUnderUtilizedHost.addAll(switchedOffHosts);
-		excludedHostsForFindingUnderUtilizedHost.addAll(extractHostListFromMigrationMap(migrationMap));
-
 		// over-utilized + under-utilized hosts
-		Set<PowerHost> excludedHostsForFindingNewVmPlacement = new HashSet<PowerHost>();
+		PowerHostMask excludedHostsForFindingNewVmPlacement = getNewVmPlacementHostMask();
+		excludedHostsForFindingNewVmPlacement.clear();
 		excludedHostsForFindingNewVmPlacement.addAll(overUtilizedHosts);
 		excludedHostsForFindingNewVmPlacement.addAll(switchedOffHosts);
 
-		int numberOfHosts = getHostList().size();
+		// over-utilized hosts + hosts that are selected to migrate VMs to from over-utilized hosts
+		PowerHostMask excludedHostsForFindingUnderUtilizedHost = getUnderUtilizedHostMask();
+		excludedHostsForFindingUnderUtilizedHost.clear();
+		excludedHostsForFindingUnderUtilizedHost.or(excludedHostsForFindingNewVmPlacement);
+		addTargetHosts(excludedHostsForFindingUnderUtilizedHost, migrationPlan);
+
+		PowerHostUtilizationQueue underUtilizedHostQueue = getUnderUtilizedHostQueue();
+		underUtilizedHostQueue.build(this.<PowerHost> getHostList());
 
+		int numberOfConsolidatedHosts = 0;
 		while (true) {
-			if (numberOfHosts == excludedHostsForFindingUnderUtilizedHost.size()) {
+			PowerHost underUtilizedHost = pollUnderUtilizedHost(excludedHostsForFindingUnderUtilizedHost);
+			if (underUtilizedHost == null) {
 				break;
 			}
-
-			PowerHost underUtilizedHost = getUnderUtilizedHost(excludedHostsForFindingUnderUtilizedHost);
-			if (underUtilizedHost == null) {
+			if (isConsolidationBudgetExhausted(numberOfConsolidatedHosts)) {
+				// every consolidated host is either fully placed or rolled back, so the plan is complete
+				Log.printConcatLine("Consolidation budget exhausted after ", numberOfConsolidatedHosts,
+						" under-utilized hosts\n");
+				budgetExhaustedOptimizations++;
 				break;
 			}
+			numberOfConsolidatedHosts++;
 
 			Log.printConcatLine("Under-utilized host: host #", underUtilizedHost.getId(), "\n");
 
@@ -215,17 +352,36 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 			}
 			Log.printLine();
 
-			List<Map<String, Object>> newVmPlacement = getNewVmPlacementFromUnderUtilizedHost(
+			PowerMigrationPlan newVmPlacement = getNewVmPlacementFromUnderUtilizedHost(
 					vmsToMigrateFromUnderUtilizedHost,
 					excludedHostsForFindingNewVmPlacement);
 
-			excludedHostsForFindingUnderUtilizedHost.addAll(extractHostListFromMigrationMap(newVmPlacement));
+			addTargetHosts(excludedHostsForFindingUnderUtilizedHost, newVmPlacement);
 
-			migrationMap.addAll(newVmPlacement);
+			migrationPlan.addAll(newVmPlacement);
 			Log.printLine();
 		}
+		underUtilizedHostQueue.clear();
 
-		return migrationMap;
+		return migrationPlan;
+	}
+
+	/**
+	 * Checks whether the current optimization must stop consolidating under-utilized hosts: its
+	 * wall-clock time, counted from the start of the optimization, reached the
+	 * {@link #getConsolidationTimeBudget() time budget}, or it consolidated as many hosts as the
+	 * {@link #getConsolidationOperationBudget() operation budget}. The over-utilized hosts are
+	 * always handled, whatever the budget.
+	 * 
+	 * @param numberOfConsolidatedHosts the number of under-utilized hosts consolidated so far
+	 * @return true, if the consolidation must stop
+	 */
+	protected boolean isConsolidationBudgetExhausted(int numberOfConsolidatedHosts) {
+		if (numberOfConsolidatedHosts >= getConsolidationOperationBudget()) {
+			return true;
+		}
+		return getConsolidationTimeBudget() != Double.POSITIVE_INFINITY
+				&& (System.nanoTime() - optimizationStartTime) / 1e9 >= getConsolidationTimeBudget();
 	}
 
 	/**
@@ -254,190 +410,330 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @return the host found to host the VM
 	 */
 	public PowerHost findHostForVm(Vm vm, Set<? extends Host> excludedHosts) {
-		
-		
-		  double minPower = Double.MAX_VALUE;
-		 
-		PowerHost allocatedHost = null;
-
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
-		}
-		return allocatedHost;
-		
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.PABFD);
 	}
 ////////////////////////////////////
 	public PowerHost findHostForVmPABFD(Vm vm, Set<? extends Host> excludedHosts) {
-		double minPower = Double.MAX_VALUE;
-		PowerHost allocatedHost = null;
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.PABFD);
+	}
+	//MWFDVP
+	public PowerHost findHostForVmMWFDVP(Vm vm, Set<? extends Host> excludedHosts) {
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.MWFDVP);
+	}
+	//SWFDVP
+	public PowerHost findHostForVmSWFDVP(Vm vm, Set<? extends Host> excludedHosts) {
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.SWFDVP);
+	}
+	//FFDHDVP
+	/**
+	 * Finds the host of least available power that can take a VM without being over utilized,
+	 * that is the last such host by available power decreasing. The hosts are read from the
+	 * available power index by available power increasing, so the scan stops at the first host
+	 * found and the host list is not reordered.
+	 * 
+	 * @param vm the VM
+	 * @param excludedHosts the excluded hosts
+	 * @return the host found to host the VM
+	 */
+	public PowerHost findHostForVmFFDHDVP(Vm vm, Set<? extends Host> excludedHosts) {
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.FFDHDVP);
+	}
 
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
+///////////////////////////////////	
+	//modified worst fit VM placement for clustering
+	public PowerHost findHostForVmMWFVP_C(Vm vm, Set<? extends Host> excludedHosts) {
+		return findHost(vm, excludedHosts, PowerHostSelectionStrategies.MWFVP_C);
+	}
+
+	/**
+	 * Finds the destination host of a VM among the hosts that can take it without being over
+	 * utilized, by the given strategy: the host of least score, ties going to the host met first
+	 * in the scan. The hosts are scanned in host list order, which is host id order unless the
+	 * list was sorted, or by available power increasing through {@link #getHostPowerIndex()}.
+	 * 
+	 * <br/>When the strategy scores every host in host list order, the policy evaluates hosts
+	 * without side effects, there are at least {@link #getParallelScanThreshold()} hosts and more
+	 * than one processor, the candidates are evaluated concurrently in chunks. The chunk results
+	 * are reduced in scan order, so the host found is the one of the sequential scan.
+	 * 
+	 * <br/>Excluded hosts given as a {@link PowerHostMask} are cleared from the candidates of the
+	 * capacity index in bulk, instead of being looked up host by host.
+	 * 
+	 * @param vm the VM
+	 * @param excludedHosts the excluded hosts
+	 * @param strategy the host selection strategy
+	 * @return the host found to host the VM, or null if none can take it
+	 */
+	public PowerHost findHost(Vm vm, Set<? extends Host> excludedHosts, PowerHostSelectionStrategy strategy) {
+		Iterable<PowerHost> candidates;
+		Set<? extends Host> checkedExcludedHosts = excludedHosts;
+		if (strategy.isScannedByAvailablePower()) {
+			if (!getHostCapacityIndex().isValid()) {
+				// outside of an optimization, the hosts may have processed their VMs since the last call
+				getHostPowerIndex().refresh(this.<PowerHost> getHostList());
 			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
+			candidates = getHostPowerIndex().getHostsByIncreasingAvailablePower();
+		} else {
+			if (excludedHosts instanceof PowerHostMask && getHostCapacityIndex().isValid()) {
+				candidates = getHostCapacityIndex().getCandidates(vm, (PowerHostMask) excludedHosts);
+				checkedExcludedHosts = Collections.<Host> emptySet();
+			} else {
+				candidates = getCandidateHosts(vm);
+			}
+			if (!strategy.isFirstFit()
+					&& getHostList().size() >= getParallelScanThreshold()
+					&& isHostScanThreadSafe()
+					&& getParallelScanPool().getParallelism() > 1) {
+				List<PowerHost> candidateList = new ArrayList<PowerHost>();
+				for (PowerHost host : candidates) {
+					candidateList.add(host);
 				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
+				if (candidateList.size() >= getParallelScanThreshold()) {
+					HostScanTask task = new HostScanTask(
+							candidateList,
+							0,
+							candidateList.size(),
+							vm,
+							checkedExcludedHosts,
+							strategy);
+					return getParallelScanPool().invoke(task).host;
 				}
+				candidates = candidateList;
 			}
 		}
-		return allocatedHost;
-	
+		HostScanResult result = new HostScanResult();
+		for (PowerHost host : candidates) {
+			if (result.offer(host, getScoreAfterAllocation(host, vm, checkedExcludedHosts, strategy))
+					&& strategy.isFirstFit()) {
+				break;
+			}
+		}
+		return result.host;
 	}
-	//MWFDVP
-	public PowerHost findHostForVmMWFDVP(Vm vm, Set<? extends Host> excludedHosts) {
-		 
-		 double maxPower = Double.MIN_VALUE;
-			PowerHost allocatedHost = null;
 
-			for (PowerHost host : this.<PowerHost> getHostList()) {
-				if (excludedHosts.contains(host)) {
-					continue;
-				}
-				if (host.isSuitableForVm(vm)) {
-					if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-						continue;
-					}
-
-					try {
-						double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-						if (powerAfterAllocation != -1) {
-							double powerDiff = powerAfterAllocation - host.getPower();
-							if (powerDiff > maxPower) {
-								maxPower = powerDiff;
-								allocatedHost = host;
-							}
-						}
-					} catch (Exception e) {
-					}
-				}
-			}
-			return allocatedHost;
+	/**
+	 * Scores a host for a VM with a host selection strategy. Nothing is changed, neither the host
+	 * nor the placement overlay, when the policy {@link #isHostScanThreadSafe()}.
+	 * 
+	 * @param host the candidate host
+	 * @param vm the VM
+	 * @param excludedHosts the excluded hosts
+	 * @param strategy the host selection strategy
+	 * @return the score, or NaN if the host is excluded, cannot take the VM, would be over
+	 *         utilized after the placement or is rejected by the strategy
+	 */
+	protected double getScoreAfterAllocation(
+			PowerHost host,
+			Vm vm,
+			Set<? extends Host> excludedHosts,
+			PowerHostSelectionStrategy strategy) {
+		if (excludedHosts.contains(host) || !getPlacementOverlay().isSuitableForVm(host, vm)) {
+			return Double.NaN;
+		}
+		if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
+			return Double.NaN;
+		}
+		return strategy.getScore(host, getPowerAfterAllocation(host, vm));
+	}
 
+	/**
+	 * Checks whether hosts can be evaluated for a placement concurrently, that is whether
+	 * {@link #isHostOverUtilized(PowerHost, Vm)} only reads the hosts and the placement overlay.
+	 * The default implementation places the VM on the host to check it, so it is not; the
+	 * policies evaluating the projected utilization override this method.
+	 * 
+	 * @return true, if the placement scans may run in parallel
+	 */
+	protected boolean isHostScanThreadSafe() {
+		return false;
 	}
-	//SWFDVP
-	public PowerHost findHostForVmSWFDVP(Vm vm, Set<? extends Host> excludedHosts) {
-		double maxPower = Double.MIN_VALUE;
-		PowerHost allocatedHost = null;
-		PowerHost secondHost = null;
 
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
+	/**
+	 * Gets the number of hosts from which the placement scans run in parallel.
+	 * 
+	 * @return the parallel scan threshold
+	 */
+	public int getParallelScanThreshold() {
+		return parallelScanThreshold;
+	}
 
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff > maxPower) {
-							maxPower = powerDiff;
-							
-							if (allocatedHost != null) secondHost = allocatedHost; 
-							allocatedHost=host;
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
-			
-			if(secondHost!=null)return secondHost;
+	/**
+	 * Sets the number of hosts from which the placement scans run in parallel, if the policy
+	 * {@link #isHostScanThreadSafe()}. {@link Integer#MAX_VALUE} keeps the scans sequential.
+	 * 
+	 * @param parallelScanThreshold the parallel scan threshold
+	 */
+	public void setParallelScanThreshold(int parallelScanThreshold) {
+		this.parallelScanThreshold = parallelScanThreshold;
+	}
+
+	/**
+	 * Gets the wall-clock time after which an optimization stops consolidating under-utilized
+	 * hosts.
+	 * 
+	 * @return the consolidation time budget, in seconds
+	 */
+	public double getConsolidationTimeBudget() {
+		return consolidationTimeBudget;
+	}
+
+	/**
+	 * Sets the wall-clock time after which an optimization stops consolidating under-utilized
+	 * hosts and returns the plan found so far, counted from the start of the optimization. The
+	 * VMs of the over-utilized hosts are always placed, so the budget bounds the latency of an
+	 * optimization beyond that. {@link Double#POSITIVE_INFINITY} consolidates all the hosts.
+	 * 
+	 * @param consolidationTimeBudget the consolidation time budget, in seconds
+	 */
+	public void setConsolidationTimeBudget(double consolidationTimeBudget) {
+		this.consolidationTimeBudget = consolidationTimeBudget;
+	}
+
+	/**
+	 * Gets the number of under-utilized hosts an optimization consolidates at most.
+	 * 
+	 * @return the consolidation operation budget
+	 */
+	public int getConsolidationOperationBudget() {
+		return consolidationOperationBudget;
+	}
+
+	/**
+	 * Sets the number of under-utilized hosts an optimization consolidates at most, a budget
+	 * that, unlike {@link #setConsolidationTimeBudget(double)}, gives the same plan on every run.
+	 * {@link Integer#MAX_VALUE} consolidates all the hosts.
+	 * 
+	 * @param consolidationOperationBudget the consolidation operation budget
+	 */
+	public void setConsolidationOperationBudget(int consolidationOperationBudget) {
+		this.consolidationOperationBudget = consolidationOperationBudget;
+	}
+
+	/**
+	 * Gets the number of optimizations whose consolidation of under-utilized hosts was stopped
+	 * by the time or operation budget.
+	 * 
+	 * @return the number of budget exhausted optimizations
+	 */
+	public int getNumberOfBudgetExhaustedOptimizations() {
+		return budgetExhaustedOptimizations;
+	}
+
+	/**
+	 * Gets the pool running the parallel placement scans, shared by all the policies. Its
+	 * threads are daemon threads, so the pool does not keep the simulation alive.
+	 * 
+	 * @return the parallel scan pool
+	 */
+	protected static synchronized ForkJoinPool getParallelScanPool() {
+		if (parallelScanPool == null) {
+			parallelScanPool = new ForkJoinPool();
 		}
-		
-		return allocatedHost;
-		
+		return parallelScanPool;
 	}
-	//FFDHDVP
-	public PowerHost findHostForVmFFDHDVP(Vm vm, Set<? extends Host> excludedHosts) {
-		sortHostsByAvailablePowerDecreasing();
-		PowerHost allocatedHost = null;
-			for (PowerHost host : this.<PowerHost> getHostList()) {
-				if (excludedHosts.contains(host)) {
-					continue;
-				}
-				if (host.isSuitableForVm(vm)) {
-					if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-						continue;
-					}
-
-					try {
-						double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-						if (powerAfterAllocation < host.getMaxPower()) {
-						 allocatedHost = host; 
-						}
-					} catch (Exception e) {
-					}
-				}
+
+	/**
+	 * The best host of a placement scan and its score.
+	 */
+	private static class HostScanResult {
+
+		/** The best host, or null if no host was accepted. */
+		private PowerHost host;
+
+		/** The score of the best host, or the bound a host must beat. */
+		private double score = Double.MAX_VALUE;
+
+		/**
+		 * Offers a host scanned after the previous ones; it is kept only if strictly better.
+		 * 
+		 * @param candidate the host
+		 * @param candidateScore the score of the host, or NaN if it is not accepted
+		 * @return true, if the host is kept
+		 */
+		public boolean offer(PowerHost candidate, double candidateScore) {
+			if (candidateScore < score) {
+				score = candidateScore;
+				host = candidate;
+				return true;
 			}
-			return allocatedHost;
+			return false;
+		}
+
 	}
-	
 
-///////////////////////////////////	
-	//modified worst fit VM placement for clustering
-	public PowerHost findHostForVmMWFVP_C(Vm vm, Set<? extends Host> excludedHosts) {
-		 
-		 double maxPower = Double.MIN_VALUE;
-			PowerHost allocatedHost = null;
+	/**
+	 * A parallel placement scan over a range of the candidate hosts. Ranges larger than
+	 * {@link #PARALLEL_SCAN_CHUNK} are split in two halves scanned concurrently, and the result
+	 * of the first half is offered the result of the second one, as a sequential scan would.
+	 */
+	private class HostScanTask extends RecursiveTask<HostScanResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The candidate hosts. */
+		private final List<PowerHost> candidates;
+
+		/** The first position of the range. */
+		private final int from;
+
+		/** The position after the range. */
+		private final int to;
+
+		/** The VM to place. */
+		private final Vm vm;
+
+		/** The excluded hosts. */
+		private final Set<? extends Host> excludedHosts;
+
+		/** The host selection strategy. */
+		private final PowerHostSelectionStrategy strategy;
+
+		/**
+		 * Instantiates a new HostScanTask.
+		 * 
+		 * @param candidates the candidate hosts
+		 * @param from the first position of the range
+		 * @param to the position after the range
+		 * @param vm the VM to place
+		 * @param excludedHosts the excluded hosts
+		 * @param strategy the host selection strategy
+		 */
+		public HostScanTask(
+				List<PowerHost> candidates,
+				int from,
+				int to,
+				Vm vm,
+				Set<? extends Host> excludedHosts,
+				PowerHostSelectionStrategy strategy) {
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+			this.vm = vm;
+			this.excludedHosts = excludedHosts;
+			this.strategy = strategy;
+		}
 
-			for (PowerHost host : this.<PowerHost> getHostList()) {
-				if (excludedHosts.contains(host)) {
-					continue;
-				}
-				if (host.isSuitableForVm(vm)) {
-					if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-						continue;
-					}
-
-					try {
-						double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-						if (powerAfterAllocation != -1) {
-							double powerDiff = powerAfterAllocation - host.getPower();
-							if (powerDiff > maxPower) {
-								maxPower = powerDiff;
-								allocatedHost = host;
-							}
-						}
-					} catch (Exception e) {
-					}
+		@Override
+		protected HostScanResult compute() {
+			if (to - from <= PARALLEL_SCAN_CHUNK) {
+				HostScanResult result = new HostScanResult();
+				for (int i = from; i < to; i++) {
+					PowerHost host = candidates.get(i);
+					result.offer(host, getScoreAfterAllocation(host, vm, excludedHosts, strategy));
 				}
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			HostScanTask first = new HostScanTask(candidates, from, middle, vm, excludedHosts, strategy);
+			HostScanTask second = new HostScanTask(candidates, middle, to, vm, excludedHosts, strategy);
+			first.fork();
+			HostScanResult secondResult = second.compute();
+			HostScanResult result = first.join();
+			if (secondResult.host != null) {
+				result.offer(secondResult.host, secondResult.score);
 			}
-			return allocatedHost;
+			return result;
+		}
 
 	}
 	
@@ -446,27 +742,222 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 /////////////////////////////////	
 	/**
 	 * Checks if a host will be over utilized after placing of a candidate VM.
+	 * A host that cannot accommodate the VM is considered over utilized.
 	 * 
 	 * @param host the host to verify
 	 * @param vm the candidate vm 
 	 * @return true, if the host will be over utilized after VM placement; false otherwise
 	 */
-	protected boolean isHostOverUtilizedAfterAllocation(PowerHost host, Vm vm) {
-		boolean isHostOverUtilizedAfterAllocation = true;
-		if (host.vmCreate(vm)) {
-			isHostOverUtilizedAfterAllocation = isHostOverUtilized(host);
-			host.vmDestroy(vm);
-		}
-		return isHostOverUtilizedAfterAllocation;
+	protected boolean isHostOverUtilizedAfterAllocation(PowerHost host, Vm vm) {
+		if (!getPlacementOverlay().canAccommodate(host, vm)) {
+			return true;
+		}
+		return isHostOverUtilized(host, vm);
+	}
+
+	/**
+	 * Checks if a host would be over utilized in the planned state, with a candidate VM, which
+	 * it can accommodate, placed on it. The default implementation applies the plan of the host
+	 * and the candidate to the host, checks it with {@link #isHostOverUtilized(PowerHost)} and
+	 * undoes the changes, restoring the host every VM is live on. The policies of this package
+	 * override it to evaluate their criterion on {@link #getProjectedUtilizationOfCpu(PowerHost, Vm)}
+	 * and {@link #getPlannedUtilizationHistory(PowerHostUtilizationHistory, Vm)}, without
+	 * touching the host.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null to check the planned state only
+	 * @return true, if the host would be over utilized; false otherwise
+	 */
+	protected boolean isHostOverUtilized(PowerHost host, Vm vm) {
+		if (vm == null && !getPlacementOverlay().isTouched(host)) {
+			return isHostOverUtilized(host);
+		}
+		List<Vm> liveVms = new ArrayList<Vm>(host.<Vm> getVmList());
+		List<Vm> plannedVms = new ArrayList<Vm>(getPlacementOverlay().<Vm> getVmList(host));
+		if (vm != null) {
+			plannedVms.add(vm);
+		}
+		Set<Vm> liveVmSet = Collections.newSetFromMap(new IdentityHashMap<Vm, Boolean>());
+		liveVmSet.addAll(liveVms);
+		Set<Vm> plannedVmSet = Collections.newSetFromMap(new IdentityHashMap<Vm, Boolean>());
+		plannedVmSet.addAll(plannedVms);
+		List<Vm> removedVms = new ArrayList<Vm>();
+		for (Vm liveVm : liveVms) {
+			if (!plannedVmSet.contains(liveVm)) {
+				removedVms.add(liveVm);
+			}
+		}
+		List<Vm> placedVms = new ArrayList<Vm>();
+		List<Host> sourceHosts = new ArrayList<Host>();
+		for (Vm plannedVm : plannedVms) {
+			if (!liveVmSet.contains(plannedVm)) {
+				placedVms.add(plannedVm);
+				// creating or destroying a VM sets its host, which is the source host of a VM to migrate
+				sourceHosts.add(plannedVm.getHost());
+			}
+		}
+
+		for (Vm removedVm : removedVms) {
+			host.vmDestroy(removedVm);
+		}
+		int created = 0;
+		while (created < placedVms.size() && host.vmCreate(placedVms.get(created))) {
+			created++;
+		}
+		boolean isHostOverUtilized = created < placedVms.size() || isHostOverUtilized(host);
+		for (int i = 0; i < created; i++) {
+			host.vmDestroy(placedVms.get(i));
+		}
+		for (Vm removedVm : removedVms) {
+			host.vmCreate(removedVm);
+		}
+		if (!removedVms.isEmpty()) {
+			// the re-created VMs were appended, so the live VM order is restored
+			host.getVmList().clear();
+			host.<Vm> getVmList().addAll(liveVms);
+		}
+		for (int i = 0; i < placedVms.size(); i++) {
+			placedVms.get(i).setHost(sourceHosts.get(i));
+		}
+		// destroying a VM re-shares the CPU of the others, which may not restore the exact capacity
+		getHostCapacityIndex().update(host);
+		return isHostOverUtilized;
+	}
+
+	/**
+	 * Gets the CPU utilization percentage history of a host in the planned state, with a
+	 * candidate VM placed on it: the history summed over the planned VMs of the host, each scaled
+	 * by its MIPS share of the host.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null for the planned VMs only
+	 * @return the planned utilization history
+	 */
+	protected double[] getPlannedUtilizationHistory(PowerHostUtilizationHistory host, Vm vm) {
+		if (vm == null && !getPlacementOverlay().isTouched(host)) {
+			return host.getUtilizationHistory();
+		}
+		List<Vm> plannedVms = new ArrayList<Vm>(getPlacementOverlay().<Vm> getVmList(host));
+		if (vm != null) {
+			plannedVms.add(vm);
+		}
+		return host.getUtilizationHistory(plannedVms);
+	}
+
+	@Override
+	public PowerHost findHostForVm(Vm vm) {
+		Set<Host> excludedHosts = new HashSet<Host>();
+		if (vm.getHost() != null) {
+			excludedHosts.add(vm.getHost());
+		}
+		return findHost(vm, excludedHosts, getHostSelectionStrategy());
+	}
+
+	/**
+	 * Gets the hosts a placement scan has to consider for a VM, in host list order. During an
+	 * optimization, the hosts that cannot fit the VM are skipped through the capacity index;
+	 * otherwise, the whole host list is returned.
+	 * 
+	 * @param vm the VM to place
+	 * @return the candidate hosts
+	 */
+	protected Iterable<PowerHost> getCandidateHosts(Vm vm) {
+		if (getHostCapacityIndex().isValid()) {
+			return getHostCapacityIndex().getCandidates(vm);
+		}
+		return this.<PowerHost> getHostList();
+	}
+
+	/**
+	 * Gets the index of the hosts by residual capacity. It is built on the placement overlay once
+	 * the VMs to migrate are removed from the over-utilized hosts, updated on every tentative
+	 * placement of the optimization, and invalidated once the plan is discarded.
+	 * 
+	 * @return the host capacity index
+	 */
+	protected PowerHostCapacityIndex getHostCapacityIndex() {
+		return hostCapacityIndex;
+	}
+
+	/**
+	 * Gets the mask of the over-utilized hosts, cleared and filled by every optimization once the
+	 * capacity index is built.
+	 * 
+	 * @return the over-utilized host mask
+	 */
+	protected PowerHostMask getOverUtilizedHostMask() {
+		return overUtilizedHostMask;
+	}
+
+	/**
+	 * Gets the mask of the hosts excluded from the VM placements of the under-utilized hosts,
+	 * reused by every optimization.
+	 * 
+	 * @return the host mask
+	 */
+	protected PowerHostMask getNewVmPlacementHostMask() {
+		return newVmPlacementHostMask;
+	}
+
+	/**
+	 * Gets the mask of the hosts excluded from the search of the next under-utilized host, reused
+	 * by every optimization.
+	 * 
+	 * @return the host mask
+	 */
+	protected PowerHostMask getUnderUtilizedHostMask() {
+		return underUtilizedHostMask;
+	}
+
+	/**
+	 * Gets the heap of the under-utilized host candidates, built at the start of the
+	 * consolidation loop of every optimization.
+	 * 
+	 * @return the under-utilized host queue
+	 */
+	protected PowerHostUtilizationQueue getUnderUtilizedHostQueue() {
+		return underUtilizedHostQueue;
+	}
+
+	/**
+	 * Gets the ordering of the hosts by available power. It is refreshed at the start of every
+	 * optimization, and on every FFDHDVP placement outside of an optimization.
+	 * 
+	 * @return the host available power index
+	 */
+	protected PowerHostAvailablePowerIndex getHostPowerIndex() {
+		return hostPowerIndex;
+	}
+
+	/**
+	 * Gets the placement overlay the VM moves are planned on during an optimization.
+	 * It is empty outside of {@link #optimizeAllocation(List)}.
+	 * 
+	 * @return the placement overlay
+	 */
+	protected PowerPlacementOverlay getPlacementOverlay() {
+		return placementOverlay;
+	}
+
+	/**
+	 * Sets the placement overlay, e.g. to share the plan of a policy with its fallback policy.
+	 * 
+	 * @param placementOverlay the placement overlay
+	 */
+	protected void setPlacementOverlay(PowerPlacementOverlay placementOverlay) {
+		this.placementOverlay = placementOverlay;
 	}
 
-	@Override
-	public PowerHost findHostForVm(Vm vm) {
-		Set<Host> excludedHosts = new HashSet<Host>();
-		if (vm.getHost() != null) {
-			excludedHosts.add(vm.getHost());
-		}
-		return findHostForVmFFDHDVP(vm, excludedHosts);
+	/**
+	 * Gets the CPU utilization percentage of a host in the planned state, as requested by its
+	 * VMs, with a candidate VM placed on it.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null for the planned VMs only
+	 * @return the projected CPU utilization
+	 */
+	protected double getProjectedUtilizationOfCpu(PowerHost host, Vm vm) {
+		return getPlacementOverlay().getProjectedUtilizationOfCpu(host, vm);
 	}
 
 	/**
@@ -483,240 +974,167 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		return hosts;
 	}
 
+	/**
+	 * Adds the target hosts of a migration plan to a set of hosts.
+	 * 
+	 * @param hosts the hosts
+	 * @param migrationPlan the migration plan
+	 */
+	protected void addTargetHosts(Set<Host> hosts, PowerMigrationPlan migrationPlan) {
+		for (int i = 0; i < migrationPlan.size(); i++) {
+			hosts.add(migrationPlan.getTargetHost(i));
+		}
+	}
+
 	/**
 	 * Gets a new vm placement considering the list of VM to migrate.
 	 * 
 	 * @param vmsToMigrate the list of VMs to migrate
 	 * @param excludedHosts the list of hosts that aren't selected as destination hosts
-	 * @return the new vm placement map
+	 * @return the new vm placement plan
 	 */
-	protected List<Map<String, Object>> getNewVmPlacement(
+	protected PowerMigrationPlan getNewVmPlacement(
 			List<? extends Vm> vmsToMigrate,
 			Set<? extends Host> excludedHosts) {
-		List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
-	//	  PowerVmList.sortByCpuUtilization(vmsToMigrate);
-		List<List<PowerVm>> cluster=null;
+		PowerMigrationPlan migrationPlan = new PowerMigrationPlan();
 		//Algorithme k-means
-        cluster=MK(excludedHosts,vmsToMigrate);
-        System.out.println(vmsToMigrate);
-	    vmsToMigrate = PowerVmList.arrageByHighDensityCluster(cluster,vmsToMigrate);
-	  //   System.out.println(vmsToMigrate);
-		 // c'est une pause de 1000ms pour observer les résultats
-	//  System.out.println(vmsToMigrate);
-	    
-	    try {
-				Thread.sleep(0);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+		List<List<PowerVm>> cluster = MK(excludedHosts, vmsToMigrate, getOverUtilizedWarmStart());
+		if (getBatchPlacement() != null) {
+			migrationPlan.addAll(getBatchPlacement().place(
+					PowerVmList.iterateByHighDensityCluster(cluster, vmsToMigrate, isDensityRankedByDemand()),
+					this.<PowerHost> getHostList(),
+					excludedHosts,
+					getPlacementOverlay(),
+					new PowerVmBatchPlacement.HostFilter() {
+
+						@Override
+						public boolean accepts(PowerHost host, Vm vm) {
+							return getUtilizationOfCpuMips(host) == 0 || !isHostOverUtilizedAfterAllocation(host, vm);
+						}
+					}));
+			for (int i = 0; i < migrationPlan.size(); i++) {
+				PowerHost allocatedHost = migrationPlan.getTargetHost(i);
+				getHostCapacityIndex().update(allocatedHost);
+				Log.printConcatLine("VM #", migrationPlan.getVm(i).getId(), " allocated to host #", allocatedHost.getId());
 			}
-		  
-	   		for (Vm vm : vmsToMigrate) {
-			PowerHost allocatedHost = findHostForVmFFDHDVP(vm, excludedHosts);
+			return migrationPlan;
+		}
+		for (Vm vm : PowerVmList.iterateByHighDensityCluster(cluster, vmsToMigrate, isDensityRankedByDemand())) {
+			PowerHost allocatedHost = findHost(vm, excludedHosts, getHostSelectionStrategy());
 			if (allocatedHost != null) {
-				allocatedHost.vmCreate(vm);
+				getPlacementOverlay().place(vm, allocatedHost);
+				getHostCapacityIndex().update(allocatedHost);
 				Log.printConcatLine("VM #", vm.getId(), " allocated to host #", allocatedHost.getId());
-				Map<String, Object> migrate = new HashMap<String, Object>();
-				migrate.put("vm", vm);
-				migrate.put("host", allocatedHost);
-				migrationMap.add(migrate);
+				migrationPlan.add(vm, allocatedHost);
 			}	
 		}
-		return migrationMap;
+		return migrationPlan;
 	}
-	/*    
-    centroidss[0][0]=2500;centroidss[0][1]=870;
-    centroidss[1][0]=2000; centroidss[1][1]=1740;
-    centroidss[2][0]=1000; centroidss[2][1]=1740;
-    centroidss[2][0]=500; centroidss[2][1]=613;
-    */
 
-/*
- *    
-        centroidss[0][0]=2500;centroidss[0][1]=870;
-        centroidss[1][0]=2000; centroidss[1][1]=1740;
-        centroidss[2][0]=1000; centroidss[2][1]=1740;
-        centroidss[2][0]=500; centroidss[2][1]=613;
-          
-          
- * */
 	protected   List<List<PowerVm>> MK(Set<? extends Host> excludedHosts,List<? extends Vm> vmsToMigrate) {
-		//nombre  initiale des clusters
-		int  k = find_numberof_cluster(excludedHosts,vmsToMigrate);
-		System.out.println(" find_numberof_cluster ");
-		 List<List<PowerVm>> Clusters = null ;
-		System.out.println("Nombre des clusters  =====  "+k);
-		
-	
-		
-		if (k != -1) {
+		return MK(excludedHosts, vmsToMigrate, null);
+	}
+
+	/**
+	 * Clusters the VMs to migrate with the clustering algorithm. For centroid-based algorithms,
+	 * when a warm-start state is given and the fleet did not drift too much since its last full
+	 * seeding, the previous k and centroids seed the run; otherwise k and the initial centroids
+	 * are computed from scratch and the state is re-anchored. Density-based algorithms find the
+	 * number of clusters themselves.
+	 * 
+	 * @param excludedHosts the hosts that aren't selected as destination hosts
+	 * @param vmsToMigrate the VMs to cluster
+	 * @param warmStart the warm-start state of the call site, or null to always seed from scratch
+	 * @return one list of VMs per cluster, or null if the VMs are not clustered
+	 */
+	protected List<List<PowerVm>> MK(
+			Set<? extends Host> excludedHosts,
+			List<? extends Vm> vmsToMigrate,
+			KMeansWarmStart warmStart) {
+		VmClusteringAlgorithm algorithm = getClusteringAlgorithm();
+		if (!algorithm.isCentroidBased()) {
+			warmStart = null;
 		}
-		//centroide initial 
-		     if (k > 2) {
-        double centroidss[][]=new double[k][2];
-        centroidss =find_init_centroids(vmsToMigrate,k); 
-		System.out.println("**************************************");
-	 //	try {
-			double[] mips = new double[vmsToMigrate.size()];
-			double[] ram = new double[vmsToMigrate.size()];
-			for (int i = 0; i < vmsToMigrate.size(); i++) {
-				mips[i]=(double) vmsToMigrate.get(i).getMips();
-				ram[i]=(double) vmsToMigrate.get(i).getRam();
-			}
-			 
-			for (int i = 0; i < vmsToMigrate.size(); i++) {
-				System.out.print(" "+vmsToMigrate.get(i).getMips()); 
-				System.out.print(" "+vmsToMigrate.get(i).getRam()); 
-			}
-			
-		// visualiser les résultats dans un graphe
-		//	 easyjcckit.QuickPlot.scatter(ram , mips );  
-			// easyjcckit.QuickPlot.addScatter(ram, mips);
-		//	System.out.println("Press enter to exit");
-		//	System.in.read();
-		//} catch (IOException e) {
-			// TODO Auto-generated catch block
-			//e.printStackTrace();
-		//}
-			// affichage des centroides 
-		System.out.println("**************************************");
-	 	for (int i = 0; i < k; i++) {
-		 	System.err.println("centroids  :  "+centroidss[i][0] +"centroids  :  "+centroidss[i][1]); 
-	 	}
-	 	System.out.println("***************************************");
-	       try {
-				Thread.sleep(0);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		double totalMips = 0;
+		for (Vm vm : vmsToMigrate) {
+			totalMips += vm.getMips();
+		}
+		double capacity = getTotalAvailableMips();
+		boolean warm = warmStart != null
+				&& vmsToMigrate.size() > 2
+				&& warmStart.isReusable(vmsToMigrate.size(), totalMips, capacity);
+
+		KMeansClusterer clusterer = getClusterer();
+		VmFeatureExtractor featureExtractor = getFeatureExtractor();
+		clusterer.setPoints(
+				featureExtractor.extract(vmsToMigrate),
+				vmsToMigrate.size(),
+				featureExtractor.getDimensions());
 
-	 	double Lastcentroidss[][]=new double[k][2];
-	 for (int U = 0; U < 10; U++)  {
-		 System.out.println("// //// //// //// iter "+U+1); 
-		   Clusters =PowerVmList.returnCluster(vmsToMigrate,centroidss);
-		 Lastcentroidss = centroidss;
-	 		centroidss=getNewCentroids(Clusters);
-	 		System.out.println("--------------------------------------");
-		 	for (int i = 0; i < k; i++) {
-	 			 	System.out.println("centroids  :  "+centroidss[i][0] +"centroids  :  "+centroidss[i][1]); 
-	 		 	}
-	 		System.out.println("--------------------------------------");
-	 		  try {
-					Thread.sleep(0);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+		//nombre  initiale des clusters
+		int  k;
+		if (!algorithm.isCentroidBased()) {
+			k = vmsToMigrate.size();
+		} else {
+			k = warm ? warmStart.getNumberOfClusters() : selectNumberOfClusters(excludedHosts,vmsToMigrate);
+		}
+		ClusteringListener listener = clusterer.getListener();
+		if (listener != null) {
+			listener.numberOfClustersSelected(k, vmsToMigrate.size(), warm);
+		}
+		 List<List<PowerVm>> Clusters = null ;
 
-	 		if (egal(Lastcentroidss, centroidss)) {
-	 			System.err.println("voila le resultats ===> ");
-	 			try {
-	 				Thread.sleep(0);
-	 			} catch (InterruptedException e) {
-	 				// TODO Auto-generated catch block
-	 				e.printStackTrace();
-	 			}
-				break;	}}
-	 //while(true);
-	 }	
-		     
-		    
-		     
-	return (List<List<PowerVm>>) Clusters;
-	}
+		if (k > 2) {
+			Clusters = algorithm.cluster(clusterer, vmsToMigrate, k, warm ? warmStart.getCentroids() : null);
 
-	
-	public static boolean egal(double[][] lastcentroidss,double[][] centroidss){
-		boolean test=true;
-		for(int y=0; y<lastcentroidss.length; y++)
-			for (int i = 0; i < lastcentroidss[y].length; i++) {
-				 if(centroidss[y][i]!=lastcentroidss[y][i]) test=false;
+			double centroidss[][] = algorithm.getCentroids();
+			if (listener != null) {
+				listener.clustersFormed(algorithm.getName(), Clusters, centroidss);
 			}
-		   
-		return test;
-	    }
 
-	private double[][] getNewCentroids(List<List<PowerVm>> clusters) {
-	double [][]centroid = new double[clusters.size()][2];
-		double moyenRAM ,moyenMIPS;
-		for (int icluster = 0; icluster < clusters.size(); icluster++) {
-			moyenRAM =0.0;
-			moyenMIPS= 0.0;
-			for (int vmcluster = 0; vmcluster < clusters.get(icluster).size(); vmcluster++) {
-				moyenMIPS+=clusters.get(icluster).get(vmcluster).getMips();
-				moyenRAM+=clusters.get(icluster).get(vmcluster).getRam();
+			if (warmStart != null) {
+				if (warm) {
+					warmStart.setCentroids(centroidss);
+				} else {
+					warmStart.setSeed(centroidss, vmsToMigrate.size(), totalMips, capacity);
+				}
 			}
-			centroid[icluster][0]=(moyenMIPS/clusters.get(icluster).size());
-			centroid[icluster][1]=(moyenRAM/clusters.get(icluster).size());
-		
+		} else if (warmStart != null) {
+			warmStart.reset();
 		}
-				 
-	return centroid;
-}
+		return Clusters;
+	}
 
-	private double[][]  find_init_centroids(List<? extends Vm> vmsToMigrate, int k) {
-		ArrayList< Integer> centroids = new ArrayList<Integer>();
-		ArrayList<Double> EuclideanDistance = new ArrayList<Double>();
-		ArrayList<Double> ClustersMIPS = new ArrayList<Double>();
-		ArrayList<Double> ClusterRAM = new ArrayList<Double>(); 
-	//premiere centroide
-		float size=vmsToMigrate.size();
-		int indice=0;
-		 double MIPS1=0,RAM1=0;
-		for (int i = 0; i < size; i++) {
-			MIPS1+=vmsToMigrate.get(i).getMips();
-			RAM1+=vmsToMigrate.get(i).getRam();
-		}
-		 ClustersMIPS.add((Double)MIPS1/vmsToMigrate.size());
-		ClusterRAM.add((Double)RAM1/vmsToMigrate.size());
-		 centroids.add(indice);
-		 System.err.println("ram "+ClusterRAM+" Mips  "+ClustersMIPS);
-		 for (int icentroid = 0; icentroid < k-1; icentroid++) {
-			 
-			 EuclideanDistance.clear();
-			 ///moyenne
-			 double MIPS=0,RAM=0;
-			 for (int i = 0; i < ClusterRAM.size(); i++) {
-			  MIPS+=ClustersMIPS.get(i);
-			  RAM+=ClusterRAM.get(i);
-			}
-			double AverageMIPS=MIPS/ClustersMIPS.size(); 
-			double AverageRAM=RAM/ClusterRAM.size();
-			System.out.println("average MIPS "+AverageMIPS +" average Ram"+ AverageRAM);
-				//calclul de distance euclidienne entre le premiere centroide et les  autres 
-				for (int i = 0; i < vmsToMigrate.size(); i++) {
-					EuclideanDistance.add(Math.sqrt(Math.pow((AverageMIPS-vmsToMigrate.get(i).getMips()), 2)+Math.pow((AverageRAM-vmsToMigrate.get(i).getRam()), 2)));	 
-					}
-				double MaxDistEcl = EuclideanDistance.get(0);
-				//maximun des distances euclideans
-				for(int i = 0; i < EuclideanDistance.size(); i++){
-					 if (inArray(vmsToMigrate.get(i).getMips(), ClustersMIPS) &&  inArray(vmsToMigrate.get(i).getRam(), ClusterRAM)) {
-						continue;
-					}
-					else {
-						if(EuclideanDistance.get(i) > MaxDistEcl)
-				        	 MaxDistEcl= EuclideanDistance.get(i);
-					 }   }
-				indice=EuclideanDistance.indexOf(MaxDistEcl);
-				System.out.println("dist : "+EuclideanDistance+"\n max dist :" +EuclideanDistance.indexOf(MaxDistEcl)+"\n indice :" +indice);
-				ClustersMIPS.add(vmsToMigrate.get(indice).getMips());
-				ClusterRAM.add((double) vmsToMigrate.get(indice).getRam());
-				 System.out.println("rams and mips "+ClusterRAM +"   ;;;;;;  "+ClustersMIPS);
-				System.err.println(indice);
-			centroids.add(indice);			
+	/**
+	 * Selects the number of clusters of the VMs to migrate, whose points are loaded in the
+	 * k-means engine. With a k selector set, candidate values are scored on the points under a
+	 * compute budget; otherwise the host/VM MIPS ratio heuristic is used.
+	 * 
+	 * @param excludedHosts the hosts that aren't selected as destination hosts
+	 * @param vmsToMigrate the VMs to cluster
+	 * @return the number of clusters; VMs are only clustered if it is greater than 2
+	 */
+	protected int selectNumberOfClusters(Set<? extends Host> excludedHosts, List<? extends Vm> vmsToMigrate) {
+		if (getClusterCountSelector() == null) {
+			return find_numberof_cluster(excludedHosts, vmsToMigrate);
 		}
-		   
-		 double centroidss[][]=new double[centroids.size()][2];
-		 centroidss[0][0]=ClustersMIPS.get(0);
-	     centroidss[0][1]=ClusterRAM.get(0);
-		for (int i = 1; i < centroids.size(); i++) {
-			centroidss[i][0]=vmsToMigrate.get(centroids.get(i)).getMips();
-			centroidss[i][1]=vmsToMigrate.get(centroids.get(i)).getRam();
+		return getClusterCountSelector().select(getClusterer(), KMeansClusterer.DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Gets the total available MIPS of the hosts, used to detect capacity changes
+	 * between two clustering runs.
+	 * 
+	 * @return the total available MIPS
+	 */
+	protected double getTotalAvailableMips() {
+		double availableMips = 0;
+		for (PowerHost host : this.<PowerHost> getHostList()) {
+			availableMips += host.getAvailableMips();
 		}
-	return centroidss;
-}
-	
+		return availableMips;
+	}
+
 	
 	public static boolean inArray(double value, ArrayList<Double> clustersMIPS)
 	{
@@ -756,10 +1174,6 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		       }
 	      int maxpoint = (int)(AlphaMaxAvailableCpuMip/DeltaMinCurrentAllocatedCpuMips); 
 	      int minpoint = (int)(BetaMinAvailableCpuMip/GamaMaxCurrentAllocatedCpuMips);
-		System.out.println("_______________________________________");
-	      System.out.println(CurrentCpuMipsParHost);
-	      System.out.println(CurrentCpuMipsParVm);
-	    System.out.println("_______________________________________");
 	      //if (((int)(maxpoint+minpoint)/2) > 2) {
 			 return ((int)((maxpoint+minpoint)/2)-1);
 	    //  return 3;
@@ -791,52 +1205,31 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	}
 	
 	
-	protected List<Map<String, Object>> getNewVmPlacementFromUnderUtilizedHost(
+	protected PowerMigrationPlan getNewVmPlacementFromUnderUtilizedHost(
 			List<? extends Vm> vmsToMigrate,
 			Set<? extends Host> excludedHosts) {
-		List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
-	//	 PowerVmList.sortByCpuUtilization(vmsToMigrate);
-  	List<List<PowerVm>> cluster=null;
- 	cluster=MK(excludedHosts,vmsToMigrate);
- 	 vmsToMigrate = PowerVmList.arrageByHighDensityCluster(cluster,vmsToMigrate);
-			 
-		 //if (vmsToMigrate.size() > 5 && !inZero(PowerVmList.returnCluster(vmsToMigrate,find_init_centroids(vmsToMigrate, find_numberof_cluster(excludedHosts, vmsToMigrate))))) {
- /*
-		if (vmsToMigrate != null && excludedHosts != null) {
-			
-		List<List<PowerVm>> cluster;
-		cluster=MK(excludedHosts,vmsToMigrate);
-	 vmsToMigrate = PowerVmList.arrageByHighDensityCluster(cluster,vmsToMigrate);
-		 
-		 try {
-				Thread.sleep(0);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-	 	 }
-	 	
- */
-		for (Vm vm : vmsToMigrate) {
-			PowerHost allocatedHost = findHostForVmMWFDVP(vm, excludedHosts);
+		PowerMigrationPlan migrationPlan = new PowerMigrationPlan();
+		List<List<PowerVm>> cluster = MK(excludedHosts, vmsToMigrate, getUnderUtilizedWarmStart());
+		for (Vm vm : PowerVmList.iterateByHighDensityCluster(cluster, vmsToMigrate, isDensityRankedByDemand())) {
+			PowerHost allocatedHost = findHost(vm, excludedHosts, getUnderUtilizedHostSelectionStrategy());
 			if (allocatedHost != null) {
-				allocatedHost.vmCreate(vm);
+				getPlacementOverlay().place(vm, allocatedHost);
+				getHostCapacityIndex().update(allocatedHost);
 				Log.printConcatLine("VM #", vm.getId(), " allocated to host #", allocatedHost.getId());
 
-				Map<String, Object> migrate = new HashMap<String, Object>();
-				migrate.put("vm", vm);
-				migrate.put("host", allocatedHost);
-				migrationMap.add(migrate);
+				migrationPlan.add(vm, allocatedHost);
 			} else {
 				Log.printLine("Not all VMs can be reallocated from the host, reallocation cancelled");
-				for (Map<String, Object> map : migrationMap) {
-					((Host) map.get("host")).vmDestroy((Vm) map.get("vm"));
+				for (int i = 0; i < migrationPlan.size(); i++) {
+					Host host = migrationPlan.getTargetHost(i);
+					getPlacementOverlay().remove(migrationPlan.getVm(i), host);
+					getHostCapacityIndex().update(host);
 				}
-				migrationMap.clear();
+				migrationPlan.rollback(0);
 				break;
 			}
 		}
-		return migrationMap;
+		return migrationPlan;
 	}
 
 	/**
@@ -855,8 +1248,8 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 					break;
 				}
 				vmsToMigrate.add(vm);
-				host.vmDestroy(vm);
-				if (!isHostOverUtilized(host)) {
+				getPlacementOverlay().remove(vm, host);
+				if (!isHostOverUtilized(host, null)) {
 					break;
 				}
 			}
@@ -872,7 +1265,7 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 */
 	protected List<? extends Vm> getVmsToMigrateFromUnderUtilizedHost(PowerHost host) {
 		List<Vm> vmsToMigrate = new LinkedList<Vm>();
-		for (Vm vm : host.getVmList()) {
+		for (Vm vm : getPlacementOverlay().getVmList(host)) {
 			if (!vm.isInMigration()) {
 				vmsToMigrate.add(vm);
 			}
@@ -888,13 +1281,57 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	protected List<PowerHostUtilizationHistory> getOverUtilizedHosts() {
 		List<PowerHostUtilizationHistory> overUtilizedHosts = new LinkedList<PowerHostUtilizationHistory>();
 		for (PowerHostUtilizationHistory host : this.<PowerHostUtilizationHistory> getHostList()) {
-			if (isHostOverUtilized(host)) {
+			if (isHostOverUtilizedReusingDecision(host)) {
 				overUtilizedHosts.add(host);
 			}
 		}
 		return overUtilizedHosts;
 	}
 
+	/**
+	 * Checks if a host is over utilized, reusing the last decision on the host if its
+	 * {@link PowerHost#getStateVersion() state} did not change since: the statistics or the
+	 * regression of {@link #isHostOverUtilized(PowerHost)} are only computed again for the hosts
+	 * whose VM list, VM utilization history or requested MIPS changed. A reused decision records
+	 * its metric again, as a new check would. Decisions that recorded no metric, e.g. those taken
+	 * by a fallback policy, are not reused.
+	 * 
+	 * @param host the host
+	 * @return true, if the host is over utilized; false otherwise
+	 */
+	protected boolean isHostOverUtilizedReusingDecision(PowerHost host) {
+		long stateVersion = host.getStateVersion();
+		OverUtilizationDecision decision = overUtilizationDecisions.get(host);
+		if (decision != null && decision.stateVersion == stateVersion) {
+			addHistoryEntry(host, decision.metric);
+			reusedOverUtilizationDecisions++;
+			return decision.overUtilized;
+		}
+		lastHistoryMetric = Double.NaN;
+		boolean overUtilized = isHostOverUtilized(host);
+		if (Double.isNaN(lastHistoryMetric)) {
+			overUtilizationDecisions.remove(host);
+			return overUtilized;
+		}
+		if (decision == null) {
+			decision = new OverUtilizationDecision();
+			overUtilizationDecisions.put(host, decision);
+		}
+		decision.stateVersion = stateVersion;
+		decision.overUtilized = overUtilized;
+		decision.metric = lastHistoryMetric;
+		return overUtilized;
+	}
+
+	/**
+	 * Gets the number of over-utilization decisions reused because the host state did not change.
+	 * 
+	 * @return the number of reused decisions
+	 */
+	public long getNumberOfReusedOverUtilizationDecisions() {
+		return reusedOverUtilizationDecisions;
+	}
+
 	/**
 	 * Gets the switched off hosts.
 	 * 
@@ -917,6 +1354,9 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @return the most under utilized host
 	 */
 	protected PowerHost getUnderUtilizedHost(Set<? extends Host> excludedHosts) {
+		if (excludedHosts instanceof PowerHostMask && getHostCapacityIndex().isValid()) {
+			return getUnderUtilizedHost((PowerHostMask) excludedHosts);
+		}
 		double minUtilization = 1;
 		PowerHost underUtilizedHost = null;
 		for (PowerHost host : this.<PowerHost> getHostList()) {
@@ -933,6 +1373,50 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		return underUtilizedHost;
 	}
 
+	/**
+	 * Gets the most under utilized host, scanning only the positions of the capacity index that
+	 * are not masked. The hosts are met in host list order, as by
+	 * {@link #getUnderUtilizedHost(Set)}.
+	 * 
+	 * @param excludedHosts the excluded hosts, over the current build of the capacity index
+	 * @return the most under utilized host
+	 */
+	protected PowerHost getUnderUtilizedHost(PowerHostMask excludedHosts) {
+		PowerHostCapacityIndex index = getHostCapacityIndex();
+		int numberOfHosts = index.getNumberOfHosts();
+		double minUtilization = 1;
+		PowerHost underUtilizedHost = null;
+		for (int position = excludedHosts.nextClearPosition(0); position < numberOfHosts;
+				position = excludedHosts.nextClearPosition(position + 1)) {
+			PowerHost host = index.getHost(position);
+			double utilization = host.getUtilizationOfCpu();
+			if (utilization > 0 && utilization < minUtilization
+					&& !areAllVmsMigratingOutOrAnyVmMigratingIn(host)) {
+				minUtilization = utilization;
+				underUtilizedHost = host;
+			}
+		}
+		return underUtilizedHost;
+	}
+
+	/**
+	 * Takes the most under utilized host from the {@link #getUnderUtilizedHostQueue() heap} of
+	 * the consolidation loop: the host {@link #getUnderUtilizedHost(Set)} would return, in
+	 * O(log H) per host taken or dropped instead of a scan of all hosts. Hosts all of whose VMs
+	 * are migrating out, or with a VM migrating in, are dropped from the heap; the plan never
+	 * changes this for a host that is not excluded.
+	 * 
+	 * @param excludedHosts the excluded hosts
+	 * @return the most under utilized host, or null if none is left
+	 */
+	protected PowerHost pollUnderUtilizedHost(Set<? extends Host> excludedHosts) {
+		PowerHost host = getUnderUtilizedHostQueue().poll(excludedHosts);
+		while (host != null && areAllVmsMigratingOutOrAnyVmMigratingIn(host)) {
+			host = getUnderUtilizedHostQueue().poll(excludedHosts);
+		}
+		return host;
+	}
+
 	/**
 	 * Checks whether all VMs of a given host are in migration.
 	 * 
@@ -940,7 +1424,7 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @return true, if successful
 	 */
 	protected boolean areAllVmsMigratingOutOrAnyVmMigratingIn(PowerHost host) {
-		for (PowerVm vm : host.<PowerVm> getVmList()) {
+		for (PowerVm vm : getPlacementOverlay().<PowerVm> getVmList(host)) {
 			if (!vm.isInMigration()) {
 				return false;
 			}
@@ -966,6 +1450,7 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @param metric the metric to be added to the metric history map
 	 */
 	protected void addHistoryEntry(HostDynamicWorkload host, double metric) {
+		lastHistoryMetric = metric;
 		int hostId = host.getId();
 		if (!getTimeHistory().containsKey(hostId)) {
 			getTimeHistory().put(hostId, new LinkedList<Double>());
@@ -983,45 +1468,6 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 		}
 	}
 
-	/**
-	 * Updates the list of maps between a VM and the host where it is place.
-         * @see #savedAllocation
-	 */
-	protected void saveAllocation() {
-		getSavedAllocation().clear();
-		for (Host host : getHostList()) {
-			for (Vm vm : host.getVmList()) {
-				if (host.getVmsMigratingIn().contains(vm)) {
-					continue;
-				}
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("host", host);
-				map.put("vm", vm);
-				getSavedAllocation().add(map);
-			}
-		}
-	}
-
-	/**
-	 * Restore VM allocation from the allocation history.
-         * @see #savedAllocation
-	 */
-	protected void restoreAllocation() {
-		for (Host host : getHostList()) {
-			host.vmDestroyAll();
-			host.reallocateMigratingInVms();
-		}
-		for (Map<String, Object> map : getSavedAllocation()) {
-			Vm vm = (Vm) map.get("vm");
-			PowerHost host = (PowerHost) map.get("host");
-			if (!host.vmCreate(vm)) {
-				Log.printConcatLine("Couldn't restore VM #", vm.getId(), " on host #", host.getId());
-				System.exit(0);
-			}
-			getVmTable().put(vm.getUid(), host);
-		}
-	}
-
 	/**
 	 * Gets the power consumption of a host after placement of a candidate VM.
          * The VM is not in fact placed at the host.
@@ -1029,17 +1475,12 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	 * @param host the host
 	 * @param vm the candidate vm
 	 * 
-	 * @return the power after allocation
+	 * @return the power after allocation, or -1 if the utilization after allocation is not
+	 *         between 0 and 1
 	 */
 	protected double getPowerAfterAllocation(PowerHost host, Vm vm) {
-		double power = 0;
-		try {
-			power = host.getPowerModel().getPower(getMaxUtilizationAfterAllocation(host, vm));
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(0);
-		}
-		return power;
+		double power = PowerModels.getPowerOrNaN(host.getPowerModel(), getMaxUtilizationAfterAllocation(host, vm));
+		return Double.isNaN(power) ? -1 : power;
 	}
 
 	/**
@@ -1062,31 +1503,49 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	}
 	
 	/**
-	 * Gets the utilization of the CPU in MIPS for the current potentially allocated VMs.
+	 * Gets the utilization of the CPU in MIPS for the current potentially allocated VMs. It is
+	 * read in constant time from the MIPS totals of the host, corrected by the placement overlay;
+	 * when {@link PowerHost#isAggregateCheckEnabled()}, it is checked against the sum over the
+	 * planned VMs.
 	 *
 	 * @param host the host
 	 *
 	 * @return the utilization of the CPU in MIPS
 	 */
 	protected double getUtilizationOfCpuMips(PowerHost host) {
-		double hostUtilizationMips = 0;
-		for (Vm vm2 : host.getVmList()) {
-			if (host.getVmsMigratingIn().contains(vm2)) {
-				// calculate additional potential CPU usage of a migrating in VM
-				hostUtilizationMips += host.getTotalAllocatedMipsForVm(vm2) * 0.9 / 0.1;
+		PowerPlacementOverlay placementOverlay = getPlacementOverlay();
+		// calculate additional potential CPU usage of the migrating in VMs
+		double hostUtilizationMips = placementOverlay.getAllocatedMipsOfVms(host)
+				+ placementOverlay.getAllocatedMipsOfMigratingInVms(host) * 0.9 / 0.1;
+		if (PowerHost.isAggregateCheckEnabled()) {
+			double recomputedMips = computeUtilizationOfCpuMips(host);
+			if (!PowerHost.isSameMips(hostUtilizationMips, recomputedMips)) {
+				throw new IllegalStateException("Stale MIPS totals on host #" + host.getId() + ": "
+						+ hostUtilizationMips + " instead of " + recomputedMips);
 			}
-			hostUtilizationMips += host.getTotalAllocatedMipsForVm(vm2);
 		}
 		return hostUtilizationMips;
 	}
 
 	/**
-	 * Gets the saved allocation.
-	 * 
-	 * @return the saved allocation
+	 * Computes the utilization of the CPU in MIPS for the current potentially allocated VMs by
+	 * summing over the planned VMs of the host.
+	 *
+	 * @param host the host
+	 *
+	 * @return the utilization of the CPU in MIPS
 	 */
-	protected List<Map<String, Object>> getSavedAllocation() {
-		return savedAllocation;
+	private double computeUtilizationOfCpuMips(PowerHost host) {
+		PowerPlacementOverlay placementOverlay = getPlacementOverlay();
+		double hostUtilizationMips = 0;
+		for (Vm vm2 : placementOverlay.getVmList(host)) {
+			if (host.getVmsMigratingIn().contains(vm2)) {
+				// calculate additional potential CPU usage of a migrating in VM
+				hostUtilizationMips += placementOverlay.getTotalAllocatedMipsForVm(host, vm2) * 0.9 / 0.1;
+			}
+			hostUtilizationMips += placementOverlay.getTotalAllocatedMipsForVm(host, vm2);
+		}
+		return hostUtilizationMips;
 	}
 
 	/**
@@ -1169,9 +1628,252 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAl
 	public List<Double> getExecutionTimeHistoryTotal() {
 		return executionTimeHistoryTotal;
 	}
+
+	/**
+	 * Gets the k-means engine used to cluster the VMs to migrate.
+	 * 
+	 * @return the k-means engine
+	 */
+	protected KMeansClusterer getClusterer() {
+		return clusterer;
+	}
+
+	/**
+	 * Sets the fork/join pool on which the k-means assignment step runs for large VM sets.
+	 * Results are identical to the sequential run.
+	 * 
+	 * @param pool the pool, or null to cluster on the simulation thread only
+	 */
+	public void setClusteringPool(ForkJoinPool pool) {
+		getClusterer().setPool(pool);
+	}
+
+	/**
+	 * Turns the bound-pruned k-means assignment step on or off. Pruning skips most
+	 * VM-to-centroid distances after the first iteration, which keeps clustering cost
+	 * close to linear in the number of VMs as the number of clusters grows.
+	 * 
+	 * @param accelerated true to prune distance computations
+	 */
+	public void setClusteringAccelerated(boolean accelerated) {
+		getClusterer().setAccelerated(accelerated);
+	}
+
+	/**
+	 * Sets when the k-means loop stops before the maximum number of iterations.
+	 * 
+	 * @param tolerance the largest centroid move still considered converged; 0 requires
+	 *            the centroids to stay exactly in place
+	 * @param assignmentChangeThreshold the number of VMs changing cluster at or below which
+	 *            the loop stops
+	 */
+	public void setClusteringStopCriteria(double tolerance, int assignmentChangeThreshold) {
+		getClusterer().setTolerance(tolerance);
+		getClusterer().setAssignmentChangeThreshold(assignmentChangeThreshold);
+	}
+
+	/**
+	 * Gets the builder of the feature vectors clustered by k-means.
+	 * 
+	 * @return the feature extractor
+	 */
+	public VmFeatureExtractor getFeatureExtractor() {
+		return featureExtractor;
+	}
+
+	/**
+	 * Sets the builder of the feature vectors clustered by k-means, e.g. normalized MIPS, RAM
+	 * and mean utilization instead of the raw MIPS and RAM. The warm-start states are dropped,
+	 * as their centroids belong to the previous feature space.
+	 * 
+	 * @param featureExtractor the feature extractor
+	 */
+	public void setFeatureExtractor(VmFeatureExtractor featureExtractor) {
+		this.featureExtractor = featureExtractor;
+		getOverUtilizedWarmStart().reset();
+		getUnderUtilizedWarmStart().reset();
+	}
+
+	/**
+	 * Gets the selector of the number of clusters.
+	 * 
+	 * @return the selector, or null if the host/VM MIPS ratio heuristic is used
+	 */
+	public ClusterCountSelector getClusterCountSelector() {
+		return clusterCountSelector;
+	}
+
+	/**
+	 * Sets the selector of the number of clusters.
+	 * 
+	 * @param clusterCountSelector the selector, or null to use the host/VM MIPS ratio
+	 *            heuristic of {@link #find_numberof_cluster(Set, List)}
+	 */
+	public void setClusterCountSelector(ClusterCountSelector clusterCountSelector) {
+		this.clusterCountSelector = clusterCountSelector;
+	}
+
+	/**
+	 * Gets the listener of the clustering of the VMs to migrate.
+	 * 
+	 * @return the listener, or null if none is registered
+	 */
+	public ClusteringListener getClusteringListener() {
+		return getClusterer().getListener();
+	}
+
+	/**
+	 * Sets the listener of the clustering of the VMs to migrate: number of clusters, seeds,
+	 * iterations and final clusters. Without a listener, no diagnostic is built; a
+	 * {@link org.cloudbus.cloudsim.power.clustering.ClusteringLogListener} writes them to the log.
+	 * 
+	 * @param listener the listener, or null to build no diagnostic
+	 */
+	public void setClusteringListener(ClusteringListener listener) {
+		getClusterer().setListener(listener);
+	}
+
+	/**
+	 * Gets the algorithm clustering the VMs to migrate.
+	 * 
+	 * @return the clustering algorithm
+	 */
+	public VmClusteringAlgorithm getClusteringAlgorithm() {
+		return clusteringAlgorithm;
+	}
+
+	/**
+	 * Sets the algorithm clustering the VMs to migrate. The warm-start states are dropped, as
+	 * their centroids belong to the previous algorithm.
+	 * 
+	 * @param clusteringAlgorithm the clustering algorithm
+	 */
+	public void setClusteringAlgorithm(VmClusteringAlgorithm clusteringAlgorithm) {
+		this.clusteringAlgorithm = clusteringAlgorithm;
+		getOverUtilizedWarmStart().reset();
+		getUnderUtilizedWarmStart().reset();
+	}
+
+	/**
+	 * Gets the engine placing the VMs of the over-utilized hosts in one batch.
+	 * 
+	 * @return the batch placement engine, or null if the VMs are placed one by one
+	 */
+	public PowerVmBatchPlacement getBatchPlacement() {
+		return batchPlacement;
+	}
+
+	/**
+	 * Sets the engine placing the VMs of the over-utilized hosts in one batch, by multi-resource
+	 * first or best fit in the clustering order, instead of one FFDHDVP scan per VM. The hosts
+	 * taking a VM must still not be over utilized after the placement.
+	 * 
+	 * @param batchPlacement the batch placement engine, or null to place the VMs one by one
+	 */
+	public void setBatchPlacement(PowerVmBatchPlacement batchPlacement) {
+		this.batchPlacement = batchPlacement;
+	}
+
+	/**
+	 * Gets the strategy choosing the hosts of new VMs and of the VMs of over-utilized hosts.
+	 * 
+	 * @return the host selection strategy
+	 */
+	public PowerHostSelectionStrategy getHostSelectionStrategy() {
+		return hostSelectionStrategy;
+	}
+
+	/**
+	 * Sets the strategy choosing the hosts of new VMs and of the VMs of over-utilized hosts,
+	 * {@link PowerHostSelectionStrategies#FFDHDVP} by default. It is not used for the VMs of
+	 * over-utilized hosts when a {@link #getBatchPlacement() batch placement engine} is set.
+	 * 
+	 * @param hostSelectionStrategy the host selection strategy
+	 */
+	public void setHostSelectionStrategy(PowerHostSelectionStrategy hostSelectionStrategy) {
+		this.hostSelectionStrategy = hostSelectionStrategy;
+	}
+
+	/**
+	 * Gets the strategy choosing the hosts of the VMs of under-utilized hosts.
+	 * 
+	 * @return the host selection strategy
+	 */
+	public PowerHostSelectionStrategy getUnderUtilizedHostSelectionStrategy() {
+		return underUtilizedHostSelectionStrategy;
+	}
+
+	/**
+	 * Sets the strategy choosing the hosts of the VMs of under-utilized hosts,
+	 * {@link PowerHostSelectionStrategies#MWFDVP} by default.
+	 * 
+	 * @param underUtilizedHostSelectionStrategy the host selection strategy
+	 */
+	public void setUnderUtilizedHostSelectionStrategy(PowerHostSelectionStrategy underUtilizedHostSelectionStrategy) {
+		this.underUtilizedHostSelectionStrategy = underUtilizedHostSelectionStrategy;
+	}
+
+	/**
+	 * Checks whether clusters of the same size are placed by decreasing aggregate CPU demand.
+	 * 
+	 * @return true, if clusters of the same size are ranked by demand
+	 */
+	public boolean isDensityRankedByDemand() {
+		return densityRankedByDemand;
+	}
+
+	/**
+	 * Sets whether clusters of the same size are placed by decreasing aggregate CPU demand,
+	 * instead of by cluster index.
+	 * 
+	 * @param densityRankedByDemand true to rank clusters of the same size by demand
+	 */
+	public void setDensityRankedByDemand(boolean densityRankedByDemand) {
+		this.densityRankedByDemand = densityRankedByDemand;
+	}
+
+	/**
+	 * Gets the k-means warm-start state used when reallocating VMs from over-utilized hosts.
+	 * 
+	 * @return the warm-start state
+	 */
+	public KMeansWarmStart getOverUtilizedWarmStart() {
+		return overUtilizedWarmStart;
+	}
+
+	/**
+	 * Gets the k-means warm-start state used when reallocating VMs from under-utilized hosts.
+	 * 
+	 * @return the warm-start state
+	 */
+	public KMeansWarmStart getUnderUtilizedWarmStart() {
+		return underUtilizedWarmStart;
+	}
+
+	/**
+	 * Sets the maximum relative drift of the VMs to cluster or of the host capacity
+	 * before k-means is re-seeded from scratch instead of starting from the centroids
+	 * of the previous interval.
+	 * 
+	 * @param maxDrift the maximum relative drift; 0 only reuses centroids on an unchanged fleet
+	 */
+	public void setWarmStartMaxDrift(double maxDrift) {
+		getOverUtilizedWarmStart().setMaxDrift(maxDrift);
+		getUnderUtilizedWarmStart().setMaxDrift(maxDrift);
+	}
+	/**
+	 * Sorts the host list of the policy by available power decreasing. The placement does not
+	 * use it any more: {@link #getHostPowerIndex()} gives the same order without reordering the
+	 * host list.
+	 * 
+	 * @return the sorted host list
+	 */
 	public List<PowerHost> sortHostsByAvailablePowerDecreasing() {
 		List<PowerHost> lst = this.getHostList();
 		Collections.sort(lst, new AvailabeHostPowerComparator());
+		if (getHostCapacityIndex().isValid()) {
+			getHostCapacityIndex().build(lst, getPlacementOverlay());
+		}
 		return lst;}
 
 }
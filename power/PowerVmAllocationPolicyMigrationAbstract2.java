@@ -8,7 +8,6 @@
 
 package org.cloudbus.cloudsim.power;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,6 +25,7 @@ import org.cloudbus.cloudsim.container.lists.PowerContainerList;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.power.lists.PowerVmList;
 import org.cloudbus.cloudsim.power.models.PowerModel;
+import org.cloudbus.cloudsim.power.models.PowerModels;
 import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
 
 /**
@@ -50,13 +50,6 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract2 extends PowerVmA
 	/** The vm selection policy. */
 	private PowerVmSelectionPolicy vmSelectionPolicy;
 
-	/** A list of maps between a VM and the host where it is place.
-         * @todo This list of map is implemented in the worst way.
-         * It should be used just a Map<Vm, Host> to find out 
-         * what PM is hosting a given VM.
-         */
-	private final List<Map<String, Object>> savedAllocation = new ArrayList<Map<String, Object>>();
-
 	/** A map of CPU utilization history (in percentage) for each host,
          where each key is a host id and each value is the CPU utilization percentage history.*/
 	private final Map<Integer, List<Double>> utilizationHistory = new HashMap<Integer, List<Double>>();
@@ -98,6 +91,18 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract2 extends PowerVmA
          */
 	private final List<Double> executionTimeHistoryTotal = new LinkedList<Double>();
 
+	/** The ordering of the hosts by available power, read by the FFDHDVP placement. */
+	private final PowerHostAvailablePowerIndex hostPowerIndex = new PowerHostAvailablePowerIndex();
+
+	/**
+	 * Whether an optimization is placing VMs: the hosts are not changed until it ends, so the
+	 * host available power index refreshed at its start stays current.
+	 */
+	private boolean hostPowerIndexCurrent;
+
+	/** The tentative VM moves of the current optimization, on top of the live placement. */
+	private PowerPlacementOverlay placementOverlay = new PowerPlacementOverlay();
+
 	/**
 	 * Instantiates a new PowerVmAllocationPolicyMigrationAbstract.
 	 * 
@@ -129,12 +134,19 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract2 extends PowerVmA
 
 		printOverUtilizedHosts(overUtilizedHosts);
 
-		saveAllocation();
+		PowerPlacementOverlay placementOverlay = getPlacementOverlay();
+		placementOverlay.clear();
+		if (getVmSelectionPolicy() != null) {
+			getVmSelectionPolicy().setPlacementOverlay(placementOverlay);
+		}
 
 		ExecutionTimeMeasurer.start("optimizeAllocationVmSelection");
 		List<? extends Vm> vmsToMigrate = getVmsToMigrateFromHosts(overUtilizedHosts);
 		getExecutionTimeHistoryVmSelection().add(ExecutionTimeMeasurer.end("optimizeAllocationVmSelection"));
 
+		getHostPowerIndex().refresh(this.<PowerHost> getHostList());
+		hostPowerIndexCurrent = true;
+
 		Log.printLine("Reallocation of VMs from the over-utilized hosts:");
 		ExecutionTimeMeasurer.start("optimizeAllocationVmReallocation");
 		List<Map<String, Object>> migrationMap = getNewVmPlacement(vmsToMigrate, new HashSet<Host>(
@@ -145,7 +157,12 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract2 extends PowerVmA
 
 		migrationMap.addAll(getMigrationMapFromUnderUtilizedHosts(overUtilizedHosts));
 
-		restoreAllocation();
+		// the plan is in the migration map, the hosts were never changed
+		placementOverlay.clear();
+		if (getVmSelectionPolicy() != null) {
+			getVmSelectionPolicy().setPlacementOverlay(null);
+		}
+		hostPowerIndexCurrent = false;
 
 		getExecutionTimeHistoryTotal().add(ExecutionTimeMeasurer.end("optimizeAllocationTotal"));
 
@@ -242,131 +259,6 @@ public abstract class PowerVmAllocationPolicyMigrationAbstract2 extends PowerVmA
 	 * @param excludedHosts the excluded hosts
 	 * @return the host found to host the VM
 	 */
-	
-	/*
-	 * double minPower = Double.MAX_VALUE;
-		PowerHost allocatedHost = null;
-
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
-		}
-		return allocatedHost;
-	 * */
-	
-	
-	/*
-	// MWFDVP:
-	 
-	 double maxPower = Double.MIN_VALUE;
-		PowerHost allocatedHost = null;
-
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff > maxPower) {
-							maxPower = powerDiff;
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
-		}
-		return allocatedHost;
-	 */
-	
-	
-	/*
-	 * SWFDVP
-double maxPower = Double.MIN_VALUE;
-		PowerHost allocatedHost = null;
-		PowerHost secondHost = null;
-
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff > maxPower) {
-							maxPower = powerDiff;
-							
-							if (allocatedHost != null) secondHost = allocatedHost; 
-							allocatedHost = host;
-						}
-					}
-				} catch (Exception e) {
-				}
-			}
-		}
-		return secondHost;
-	 * 
-	 * */
-	
-	
-	/*FFDHDVP
-	 * 
-	 *
-	 *
-	 //sort 
-	 
-	 PowerHost allocatedHost = null;
-		for (PowerHost host : this.<PowerHost> getHostList()) {
-			if (excludedHosts.contains(host)) {
-				continue;
-			}
-			if (host.isSuitableForVm(vm)) {
-				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
-					continue;
-				}
-
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation < host.getMaxPower()) {
-					 allocatedHost = host; 
-					}
-				} catch (Exception e) {
-				}
-			}
-		}
-		return allocatedHost;
-	 * */
 	public PowerHost findHostForVm(Vm vm, Set<? extends Host> excludedHosts) {
 		double minPower = Double.MAX_VALUE;
 		PowerHost allocatedHost = null;
@@ -375,21 +267,18 @@ double maxPower = Double.MIN_VALUE;
 			if (excludedHosts.contains(host)) {
 				continue;
 			}
-			if (host.isSuitableForVm(vm)) {
+			if (getPlacementOverlay().isSuitableForVm(host, vm)) {
 				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 					continue;
 				}
 
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
+				double powerAfterAllocation = getPowerAfterAllocation(host, vm);
+				if (powerAfterAllocation != -1) {
+					double powerDiff = powerAfterAllocation - host.getPower();
+					if (powerDiff < minPower) {
+						minPower = powerDiff;
+						allocatedHost = host;
 					}
-				} catch (Exception e) {
 				}
 			}
 		}
@@ -404,21 +293,18 @@ double maxPower = Double.MIN_VALUE;
 			if (excludedHosts.contains(host)) {
 				continue;
 			}
-			if (host.isSuitableForVm(vm)) {
+			if (getPlacementOverlay().isSuitableForVm(host, vm)) {
 				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 					continue;
 				}
 
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff < minPower) {
-							minPower = powerDiff;
-							allocatedHost = host;
-						}
+				double powerAfterAllocation = getPowerAfterAllocation(host, vm);
+				if (powerAfterAllocation != -1) {
+					double powerDiff = powerAfterAllocation - host.getPower();
+					if (powerDiff < minPower) {
+						minPower = powerDiff;
+						allocatedHost = host;
 					}
-				} catch (Exception e) {
 				}
 			}
 		}
@@ -435,21 +321,18 @@ double maxPower = Double.MIN_VALUE;
 				if (excludedHosts.contains(host)) {
 					continue;
 				}
-				if (host.isSuitableForVm(vm)) {
+				if (getPlacementOverlay().isSuitableForVm(host, vm)) {
 					if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 						continue;
 					}
 
-					try {
-						double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-						if (powerAfterAllocation != -1) {
-							double powerDiff = powerAfterAllocation - host.getPower();
-							if (powerDiff > maxPower) {
-								maxPower = powerDiff;
-								allocatedHost = host;
-							}
+					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
+					if (powerAfterAllocation != -1) {
+						double powerDiff = powerAfterAllocation - host.getPower();
+						if (powerDiff > maxPower) {
+							maxPower = powerDiff;
+							allocatedHost = host;
 						}
-					} catch (Exception e) {
 					}
 				}
 			}
@@ -466,23 +349,20 @@ double maxPower = Double.MIN_VALUE;
 			if (excludedHosts.contains(host)) {
 				continue;
 			}
-			if (host.isSuitableForVm(vm)) {
+			if (getPlacementOverlay().isSuitableForVm(host, vm)) {
 				if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 					continue;
 				}
 
-				try {
-					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-					if (powerAfterAllocation != -1) {
-						double powerDiff = powerAfterAllocation - host.getPower();
-						if (powerDiff > maxPower) {
-							maxPower = powerDiff;
-							
-							if (allocatedHost != null) secondHost = allocatedHost; 
-							allocatedHost=host;
-						}
+				double powerAfterAllocation = getPowerAfterAllocation(host, vm);
+				if (powerAfterAllocation != -1) {
+					double powerDiff = powerAfterAllocation - host.getPower();
+					if (powerDiff > maxPower) {
+						maxPower = powerDiff;
+						
+						if (allocatedHost != null) secondHost = allocatedHost; 
+						allocatedHost=host;
 					}
-				} catch (Exception e) {
 				}
 			}
 			if(secondHost!=null)return secondHost;
@@ -493,47 +373,56 @@ double maxPower = Double.MIN_VALUE;
 	}
 	//FFDHDVP
 	public PowerHost findHostForVmFFDHDVP(Vm vm, Set<? extends Host> excludedHosts) {
-		List<PowerHost> hostlist=sortHostsByAvailablePowerDecreasing();
-		PowerHost allocatedHost = null;
-			for (PowerHost host : hostlist) {
-				//this.<PowerHost> getHostList()
+		if (!hostPowerIndexCurrent) {
+			// outside of an optimization, the hosts may have processed their VMs since the last call
+			getHostPowerIndex().refresh(this.<PowerHost> getHostList());
+		}
+			for (PowerHost host : getHostPowerIndex().getHostsByIncreasingAvailablePower()) {
 				if (excludedHosts.contains(host)) {
 					continue;
 				}
-				if (host.isSuitableForVm(vm)) {
+				if (getPlacementOverlay().isSuitableForVm(host, vm)) {
 					if (getUtilizationOfCpuMips(host) != 0 && isHostOverUtilizedAfterAllocation(host, vm)) {
 						continue;
 					}
 
-					try {
-						double powerAfterAllocation = getPowerAfterAllocation(host, vm);
-						if (powerAfterAllocation < host.getMaxPower()) {
-						 allocatedHost = host; 
-						}
-					} catch (Exception e) {
+					double powerAfterAllocation = getPowerAfterAllocation(host, vm);
+					if (powerAfterAllocation != -1 && powerAfterAllocation < host.getMaxPower()) {
+						return host;
 					}
 				}
 			}
-			return allocatedHost;
+			return null;
 	}
 	
 
 	/**
 	 * Checks if a host will be over utilized after placing of a candidate VM.
+	 * A host that cannot accommodate the VM is considered over utilized.
 	 * 
 	 * @param host the host to verify
 	 * @param vm the candidate vm 
 	 * @return true, if the host will be over utilized after VM placement; false otherwise
 	 */
 	protected boolean isHostOverUtilizedAfterAllocation(PowerHost host, Vm vm) {
-		boolean isHostOverUtilizedAfterAllocation = true;
-		if (host.vmCreate(vm)) {
-			isHostOverUtilizedAfterAllocation = isHostOverUtilized(host);
-			host.vmDestroy(vm);
+		if (!getPlacementOverlay().canAccommodate(host, vm)) {
+			return true;
 		}
-		return isHostOverUtilizedAfterAllocation;
+		return isHostOverUtilized(host, vm);
 	}
 
+	/**
+	 * Checks if a host would be over utilized in the planned state, with a candidate VM, which
+	 * it can accommodate, placed on it. Implementations evaluate their criterion on the planned
+	 * state, e.g. on {@link #getProjectedUtilizationOfCpu(PowerHost, Vm)}, without changing the
+	 * host.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null to check the planned state only
+	 * @return true, if the host would be over utilized; false otherwise
+	 */
+	protected abstract boolean isHostOverUtilized(PowerHost host, Vm vm);
+
 	@Override
 	public PowerHost findHostForVm(Vm vm) {
 		Set<Host> excludedHosts = new HashSet<Host>();
@@ -599,7 +488,7 @@ double maxPower = Double.MIN_VALUE;
 			PowerHost allocatedHost = findHostForVmFFDHDVP(vm, excludedHosts);
 			
 			if (allocatedHost != null) {
-				allocatedHost.vmCreate(vm);
+				getPlacementOverlay().place(vm, allocatedHost);
 				Log.printConcatLine("VM #", vm.getId(), " allocated to host #", allocatedHost.getId());
 
 				Map<String, Object> migrate = new HashMap<String, Object>();
@@ -627,7 +516,7 @@ double maxPower = Double.MIN_VALUE;
 			//algo de placement
 			PowerHost allocatedHost = findHostForVmFFDHDVP(vm, excludedHosts);
 			if (allocatedHost != null) {
-				allocatedHost.vmCreate(vm);
+				getPlacementOverlay().place(vm, allocatedHost);
 				Log.printConcatLine("VM #", vm.getId(), " allocated to host #", allocatedHost.getId());
 
 				Map<String, Object> migrate = new HashMap<String, Object>();
@@ -637,7 +526,7 @@ double maxPower = Double.MIN_VALUE;
 			} else {
 				Log.printLine("Not all VMs can be reallocated from the host, reallocation cancelled");
 				for (Map<String, Object> map : migrationMap) {
-					((Host) map.get("host")).vmDestroy((Vm) map.get("vm"));
+					getPlacementOverlay().remove((Vm) map.get("vm"), (Host) map.get("host"));
 				}
 				migrationMap.clear();
 				break;
@@ -662,8 +551,8 @@ double maxPower = Double.MIN_VALUE;
 					break;
 				}
 				vmsToMigrate.add(vm);
-				host.vmDestroy(vm);
-				if (!isHostOverUtilized(host)) {
+				getPlacementOverlay().remove(vm, host);
+				if (!isHostOverUtilized(host, null)) {
 					break;
 				}
 			}
@@ -679,7 +568,7 @@ double maxPower = Double.MIN_VALUE;
 	 */
 	protected List<? extends Vm> getVmsToMigrateFromUnderUtilizedHost(PowerHost host) {
 		List<Vm> vmsToMigrate = new LinkedList<Vm>();
-		for (Vm vm : host.getVmList()) {
+		for (Vm vm : getPlacementOverlay().getVmList(host)) {
 			if (!vm.isInMigration()) {
 				vmsToMigrate.add(vm);
 			}
@@ -747,7 +636,7 @@ double maxPower = Double.MIN_VALUE;
 	 * @return true, if successful
 	 */
 	protected boolean areAllVmsMigratingOutOrAnyVmMigratingIn(PowerHost host) {
-		for (PowerVm vm : host.<PowerVm> getVmList()) {
+		for (PowerVm vm : getPlacementOverlay().<PowerVm> getVmList(host)) {
 			if (!vm.isInMigration()) {
 				return false;
 			}
@@ -790,45 +679,6 @@ double maxPower = Double.MIN_VALUE;
 		}
 	}
 
-	/**
-	 * Updates the list of maps between a VM and the host where it is place.
-         * @see #savedAllocation
-	 */
-	protected void saveAllocation() {
-		getSavedAllocation().clear();
-		for (Host host : getHostList()) {
-			for (Vm vm : host.getVmList()) {
-				if (host.getVmsMigratingIn().contains(vm)) {
-					continue;
-				}
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("host", host);
-				map.put("vm", vm);
-				getSavedAllocation().add(map);
-			}
-		}
-	}
-
-	/**
-	 * Restore VM allocation from the allocation history.
-         * @see #savedAllocation
-	 */
-	protected void restoreAllocation() {
-		for (Host host : getHostList()) {
-			host.vmDestroyAll();
-			host.reallocateMigratingInVms();
-		}
-		for (Map<String, Object> map : getSavedAllocation()) {
-			Vm vm = (Vm) map.get("vm");
-			PowerHost host = (PowerHost) map.get("host");
-			if (!host.vmCreate(vm)) {
-				Log.printConcatLine("Couldn't restore VM #", vm.getId(), " on host #", host.getId());
-				System.exit(0);
-			}
-			getVmTable().put(vm.getUid(), host);
-		}
-	}
-
 	/**
 	 * Gets the power consumption of a host after placement of a candidate VM.
          * The VM is not in fact placed at the host.
@@ -836,17 +686,12 @@ double maxPower = Double.MIN_VALUE;
 	 * @param host the host
 	 * @param vm the candidate vm
 	 * 
-	 * @return the power after allocation
+	 * @return the power after allocation, or -1 if the utilization after allocation is not
+	 *         between 0 and 1
 	 */
 	protected double getPowerAfterAllocation(PowerHost host, Vm vm) {
-		double power = 0;
-		try {
-			power = host.getPowerModel().getPower(getMaxUtilizationAfterAllocation(host, vm));
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(0);
-		}
-		return power;
+		double power = PowerModels.getPowerOrNaN(host.getPowerModel(), getMaxUtilizationAfterAllocation(host, vm));
+		return Double.isNaN(power) ? -1 : power;
 	}
 
 	/**
@@ -876,24 +721,51 @@ double maxPower = Double.MIN_VALUE;
 	 * @return the utilization of the CPU in MIPS
 	 */
 	protected double getUtilizationOfCpuMips(PowerHost host) {
-		double hostUtilizationMips = 0;
-		for (Vm vm2 : host.getVmList()) {
-			if (host.getVmsMigratingIn().contains(vm2)) {
-				// calculate additional potential CPU usage of a migrating in VM
-				hostUtilizationMips += host.getTotalAllocatedMipsForVm(vm2) * 0.9 / 0.1;
-			}
-			hostUtilizationMips += host.getTotalAllocatedMipsForVm(vm2);
-		}
-		return hostUtilizationMips;
+		PowerPlacementOverlay placementOverlay = getPlacementOverlay();
+		// calculate additional potential CPU usage of the migrating in VMs
+		return placementOverlay.getAllocatedMipsOfVms(host)
+				+ placementOverlay.getAllocatedMipsOfMigratingInVms(host) * 0.9 / 0.1;
 	}
 
 	/**
-	 * Gets the saved allocation.
+	 * Gets the ordering of the hosts by available power. It is refreshed at the start of every
+	 * optimization, and on every FFDHDVP placement outside of an optimization.
 	 * 
-	 * @return the saved allocation
+	 * @return the host available power index
+	 */
+	protected PowerHostAvailablePowerIndex getHostPowerIndex() {
+		return hostPowerIndex;
+	}
+
+	/**
+	 * Gets the placement overlay the VM moves are planned on during an optimization.
+	 * It is empty outside of {@link #optimizeAllocation(List)}.
+	 * 
+	 * @return the placement overlay
+	 */
+	protected PowerPlacementOverlay getPlacementOverlay() {
+		return placementOverlay;
+	}
+
+	/**
+	 * Sets the placement overlay, e.g. to share the plan of a policy with another policy.
+	 * 
+	 * @param placementOverlay the placement overlay
+	 */
+	protected void setPlacementOverlay(PowerPlacementOverlay placementOverlay) {
+		this.placementOverlay = placementOverlay;
+	}
+
+	/**
+	 * Gets the CPU utilization percentage of a host in the planned state, as requested by its
+	 * VMs, with a candidate VM placed on it.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null for the planned VMs only
+	 * @return the projected CPU utilization
 	 */
-	protected List<Map<String, Object>> getSavedAllocation() {
-		return savedAllocation;
+	protected double getProjectedUtilizationOfCpu(PowerHost host, Vm vm) {
+		return getPlacementOverlay().getProjectedUtilizationOfCpu(host, vm);
 	}
 
 	/**
@@ -116,18 +116,79 @@ public class PowerVmAllocationPolicyMigrationInterQuartileRange extends
 		return utilization > upperThreshold;
 	}
 
+	/**
+	 * Checks if a host would be over utilized in the planned state, with a candidate VM placed on
+	 * it, without placing it.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm
+	 * @return true, if the host would be over utilized; false otherwise
+	 */
+	@Override
+	protected boolean isHostOverUtilized(PowerHost host, Vm vm) {
+		double upperThreshold = 0;
+		try {
+			upperThreshold = 1 - getSafetyParameter() * getPlannedHostUtilizationIqr((PowerHostUtilizationHistory) host, vm);
+		} catch (IllegalArgumentException e) {
+			return getFallbackVmAllocationPolicy().isHostOverUtilized(host, vm);
+		}
+		return getProjectedUtilizationOfCpu(host, vm) > upperThreshold;
+	}
+
+	/**
+	 * Checks whether hosts can be evaluated for a placement concurrently. The criterion only
+	 * reads the hosts, so this depends on the fallback policy.
+	 * 
+	 * @return true, if the fallback policy evaluates hosts without side effects
+	 */
+	@Override
+	protected boolean isHostScanThreadSafe() {
+		return getFallbackVmAllocationPolicy() != null && getFallbackVmAllocationPolicy().isHostScanThreadSafe();
+	}
+
 	/**
 	 * Gets the host CPU utilization percentage IQR.
 	 * 
 	 * @param host the host
 	 * @return the host CPU utilization percentage IQR
+	 * @throws IllegalArgumentException if the history is too short
 	 */
 	protected double getHostUtilizationIqr(PowerHostUtilizationHistory host) throws IllegalArgumentException {
-		double[] data = host.getUtilizationHistory();
-		if (MathUtil.countNonZeroBeginning(data) >= 12) { // 12 has been suggested as a safe value
-			return MathUtil.iqr(data);
+		double iqr = getUtilizationIqr(host.getUtilizationHistory());
+		if (Double.isNaN(iqr)) {
+			throw new IllegalArgumentException();
+		}
+		return iqr;
+	}
+
+	/**
+	 * Gets the host utilization IQR in the planned state with a candidate VM placed on it, over
+	 * the utilization history of the planned VMs of the host and of the candidate, so that the
+	 * threshold and the projected utilization it is compared with count the same VMs.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null
+	 * @return the host utilization IQR
+	 * @throws IllegalArgumentException if the history is too short
+	 */
+	protected double getPlannedHostUtilizationIqr(PowerHostUtilizationHistory host, Vm vm)
+			throws IllegalArgumentException {
+		double iqr = getUtilizationIqr(getPlannedUtilizationHistory(host, vm));
+		if (Double.isNaN(iqr)) {
+			throw new IllegalArgumentException();
 		}
-		throw new IllegalArgumentException();
+		return iqr;
+	}
+
+	/**
+	 * Computes the IQR of a utilization history.
+	 * 
+	 * @param data the utilization history
+	 * @return the IQR, or NaN if the history is too short
+	 */
+	private static double getUtilizationIqr(double[] data) {
+		// 12 has been suggested as a safe value
+		return MathUtil.countNonZeroBeginning(data) >= 12 ? MathUtil.iqr(data) : Double.NaN;
 	}
 
 	/**
@@ -161,6 +222,8 @@ public class PowerVmAllocationPolicyMigrationInterQuartileRange extends
 	public void setFallbackVmAllocationPolicy(
 			PowerVmAllocationPolicyMigrationAbstract fallbackVmAllocationPolicy) {
 		this.fallbackVmAllocationPolicy = fallbackVmAllocationPolicy;
+		// the fallback checks hosts on the plan of this policy
+		fallbackVmAllocationPolicy.setPlacementOverlay(getPlacementOverlay());
 	}
 
 	/**
@@ -33,6 +33,12 @@ import org.cloudbus.cloudsim.util.MathUtil;
  */
 public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllocationPolicyMigrationAbstract {
 
+	/**
+	 * The length of the latest utilization history the regression is computed over; 10 makes the
+	 * regression responsive enough to the latest values.
+	 */
+	private static final int REGRESSION_LENGTH = 10;
+
 	/** The scheduling interval that defines the periodicity of VM migrations. */
 	private double schedulingInterval;
 
@@ -107,31 +113,136 @@ public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllo
 	 */
 	@Override
 	protected boolean isHostOverUtilized(PowerHost host) {
-		PowerHostUtilizationHistory _host = (PowerHostUtilizationHistory) host;
-		double[] utilizationHistory = _host.getUtilizationHistory();
-		int length = 10; // we use 10 to make the regression responsive enough to latest values
-		if (utilizationHistory.length < length) {
-			return getFallbackVmAllocationPolicy().isHostOverUtilized(host);
-		}
-		double[] utilizationHistoryReversed = new double[length];
-		for (int i = 0; i < length; i++) {
-			utilizationHistoryReversed[i] = utilizationHistory[length - i - 1];
-		}
-		double[] estimates = null;
+		double predictedUtilization = 0;
 		try {
-			estimates = getParameterEstimates(utilizationHistoryReversed);
+			predictedUtilization = getPredictedUtilization(getUtilizationEstimates((PowerHostUtilizationHistory) host),
+					getMaximumVmMigrationTime(host));
 		} catch (IllegalArgumentException e) {
 			return getFallbackVmAllocationPolicy().isHostOverUtilized(host);
 		}
-		double migrationIntervals = Math.ceil(getMaximumVmMigrationTime(_host) / getSchedulingInterval());
-		double predictedUtilization = estimates[0] + estimates[1] * (length + migrationIntervals);
-		predictedUtilization *= getSafetyParameter();
 
 		addHistoryEntry(host, predictedUtilization);
 
 		return predictedUtilization >= 1;
 	}
 
+	/**
+	 * Checks if a host would be over utilized in the planned state, with a candidate VM placed on
+	 * it, without placing it.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm
+	 * @return true, if the host would be over utilized; false otherwise
+	 */
+	@Override
+	protected boolean isHostOverUtilized(PowerHost host, Vm vm) {
+		double predictedUtilization = 0;
+		try {
+			predictedUtilization = getPredictedUtilization((PowerHostUtilizationHistory) host, vm);
+		} catch (IllegalArgumentException e) {
+			return getFallbackVmAllocationPolicy().isHostOverUtilized(host, vm);
+		}
+		return predictedUtilization >= 1;
+	}
+
+	/**
+	 * Checks whether hosts can be evaluated for a placement concurrently. The criterion only
+	 * reads the hosts, so this depends on the fallback policy.
+	 * 
+	 * @return true, if the fallback policy evaluates hosts without side effects
+	 */
+	@Override
+	protected boolean isHostScanThreadSafe() {
+		return getFallbackVmAllocationPolicy() != null && getFallbackVmAllocationPolicy().isHostScanThreadSafe();
+	}
+
+	/**
+	 * Gets the host CPU utilization predicted by the regression over its latest utilization
+	 * history in the planned state with a candidate VM placed on it, at the end of the migration
+	 * of its largest VM, times the safety parameter. The history of the candidate is part of the
+	 * regressed history, scaled by its MIPS share of the host.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null
+	 * @return the predicted utilization
+	 * @throws IllegalArgumentException if the history is too short or the regression fails
+	 */
+	protected double getPredictedUtilization(PowerHostUtilizationHistory host, Vm vm)
+			throws IllegalArgumentException {
+		return getPredictedUtilization(getPlannedUtilizationEstimates(host, vm), getMaximumVmMigrationTime(host, vm));
+	}
+
+	/**
+	 * Gets the utilization predicted by regression estimates at the end of a VM migration, times
+	 * the safety parameter.
+	 * 
+	 * @param estimates the regression estimates
+	 * @param migrationTime the migration time
+	 * @return the predicted utilization
+	 */
+	protected double getPredictedUtilization(double[] estimates, double migrationTime) {
+		double migrationIntervals = Math.ceil(migrationTime / getSchedulingInterval());
+		double predictedUtilization = estimates[0] + estimates[1] * (REGRESSION_LENGTH + migrationIntervals);
+		return predictedUtilization * getSafetyParameter();
+	}
+
+	/**
+	 * Gets the regression estimates over the latest utilization history of a host.
+	 * 
+	 * @param host the host
+	 * @return the utilization estimates
+	 * @throws IllegalArgumentException if the history is too short or the regression fails
+	 */
+	protected double[] getUtilizationEstimates(PowerHostUtilizationHistory host)
+			throws IllegalArgumentException {
+		double[] estimates = computeUtilizationEstimates(host.getUtilizationHistory());
+		if (Double.isNaN(estimates[0])) {
+			throw new IllegalArgumentException();
+		}
+		return estimates;
+	}
+
+	/**
+	 * Gets the regression estimates over the latest utilization history of a host in the
+	 * planned state with a candidate VM placed on it, that is of the planned VMs of the host and
+	 * of the candidate.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm, or null
+	 * @return the utilization estimates
+	 * @throws IllegalArgumentException if the history is too short or the regression fails
+	 */
+	protected double[] getPlannedUtilizationEstimates(PowerHostUtilizationHistory host, Vm vm)
+			throws IllegalArgumentException {
+		double[] estimates = computeUtilizationEstimates(getPlannedUtilizationHistory(host, vm));
+		if (Double.isNaN(estimates[0])) {
+			throw new IllegalArgumentException();
+		}
+		return estimates;
+	}
+
+	/**
+	 * Computes the regression estimates over the latest values of a utilization history.
+	 * 
+	 * @param utilizationHistory the utilization history, latest value first
+	 * @return the utilization estimates, or NaN values if the history is too short or the
+	 *         regression fails
+	 */
+	private double[] computeUtilizationEstimates(double[] utilizationHistory) {
+		if (utilizationHistory.length < REGRESSION_LENGTH) {
+			return new double[] { Double.NaN, Double.NaN };
+		}
+		double[] utilizationHistoryReversed = new double[REGRESSION_LENGTH];
+		for (int i = 0; i < REGRESSION_LENGTH; i++) {
+			utilizationHistoryReversed[i] = utilizationHistory[REGRESSION_LENGTH - i - 1];
+		}
+		try {
+			return getParameterEstimates(utilizationHistoryReversed);
+		} catch (IllegalArgumentException e) {
+			return new double[] { Double.NaN, Double.NaN };
+		}
+	}
+
 	/**
 	 * Gets utilization estimates.
 	 * 
@@ -149,13 +260,28 @@ public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllo
 	 * @return the maximum vm migration time
 	 */
 	protected double getMaximumVmMigrationTime(PowerHost host) {
+		return getMaximumVmMigrationTime(host, null);
+	}
+
+	/**
+	 * Gets the maximum vm migration time in the planned state, with a candidate VM placed
+	 * on the host.
+	 * 
+	 * @param host the host
+	 * @param candidateVm the candidate vm, or null
+	 * @return the maximum vm migration time
+	 */
+	protected double getMaximumVmMigrationTime(PowerHost host, Vm candidateVm) {
 		int maxRam = Integer.MIN_VALUE;
-		for (Vm vm : host.getVmList()) {
+		for (Vm vm : getPlacementOverlay().getVmList(host)) {
 			int ram = vm.getRam();
 			if (ram > maxRam) {
 				maxRam = ram;
 			}
 		}
+		if (candidateVm != null && candidateVm.getRam() > maxRam) {
+			maxRam = candidateVm.getRam();
+		}
 		return maxRam / ((double) host.getBw() / (2 * 8000));
 	}
 
@@ -185,6 +311,8 @@ public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllo
 	public void setFallbackVmAllocationPolicy(
 			PowerVmAllocationPolicyMigrationAbstract fallbackVmAllocationPolicy) {
 		this.fallbackVmAllocationPolicy = fallbackVmAllocationPolicy;
+		// the fallback checks hosts on the plan of this policy
+		fallbackVmAllocationPolicy.setPlacementOverlay(getPlacementOverlay());
 	}
 
 	/**
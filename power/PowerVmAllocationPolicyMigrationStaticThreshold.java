@@ -70,6 +70,29 @@ public class PowerVmAllocationPolicyMigrationStaticThreshold extends PowerVmAllo
 		return utilization > getUtilizationThreshold();
 	}
 
+	/**
+	 * Checks if a host would be over utilized with a candidate VM placed on it, without placing it.
+	 * 
+	 * @param host the host
+	 * @param vm the candidate vm
+	 * @return true, if the host would be over utilized; false otherwise
+	 */
+	@Override
+	protected boolean isHostOverUtilized(PowerHost host, Vm vm) {
+		return getProjectedUtilizationOfCpu(host, vm) > getUtilizationThreshold();
+	}
+
+	/**
+	 * Checks whether hosts can be evaluated for a placement concurrently. The threshold is
+	 * checked on the projected utilization, which only reads the hosts.
+	 * 
+	 * @return true
+	 */
+	@Override
+	protected boolean isHostScanThreadSafe() {
+		return true;
+	}
+
 	/**
 	 * Sets the utilization threshold.
 	 * 
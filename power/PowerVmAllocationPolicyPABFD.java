@@ -44,6 +44,11 @@ public class PowerVmAllocationPolicyPABFD extends PowerVmAllocationPolicyMigrati
 		return false;
 	}
 
+	@Override
+	protected boolean isHostOverUtilized(PowerHost host, Vm vm) {
+		return false;
+	}
+
 	@Override
 	public PowerHost allocateHostForVm(Host host) {
 		// TODO Auto-generated method stub
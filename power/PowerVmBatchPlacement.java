@@ -0,0 +1,319 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A placement engine placing a whole batch of VMs in one pass, by multi-resource first fit or
+ * best fit over the residual CPU, RAM and bandwidth of the hosts. The VMs are placed in the
+ * order they are given, which is expected to be decreasing already, e.g. the order of the
+ * clustering stage; the engine does not sort them.
+ *
+ * <br/>The residual capacity of the hosts is read through a placement overlay, and every
+ * placement is recorded in it, so the batch is planned without touching the hosts. The
+ * residual capacities are kept in a structure built once per batch:
+ * <ul>
+ * <li>first fit uses a max tree over the host positions, giving the first host, in host list
+ * order, whose residual CPU, RAM and bandwidth may fit a VM;</li>
+ * <li>best fit uses a tree set of the hosts by residual CPU, giving the host of least residual
+ * CPU that fits a VM.</li>
+ * </ul>
+ * Placing V VMs on H hosts then typically costs O((V + H) log H), instead of V scans of the H
+ * hosts; hosts the structure cannot rule out on CPU alone are still checked one by one. A host
+ * found by the structure is confirmed by {@link PowerPlacementOverlay#isSuitableForVm(Host, Vm)}
+ * and by the {@link HostFilter} of the caller, e.g. an over-utilization check; when it is
+ * rejected, the search goes on from the next host.
+ */
+public class PowerVmBatchPlacement {
+
+	/**
+	 * The rule choosing among the hosts that fit a VM.
+	 */
+	public enum Fit {
+
+		/** The first host in host list order. */
+		FIRST_FIT,
+
+		/** The host of least residual CPU; ties go to the first host in host list order. */
+		BEST_FIT
+	}
+
+	/**
+	 * A check of a host that fits a VM, run before the VM is placed on it.
+	 */
+	public interface HostFilter {
+
+		/**
+		 * Checks whether a VM may be placed on a host that has the resources for it.
+		 *
+		 * @param host the host
+		 * @param vm the vm
+		 * @return true, if the VM may be placed on the host
+		 */
+		boolean accepts(PowerHost host, Vm vm);
+
+	}
+
+	/** The rule choosing among the hosts that fit a VM. */
+	private final Fit fit;
+
+	/** The hosts of the current batch. */
+	private final List<PowerHost> hosts = new ArrayList<PowerHost>();
+
+	/** The residual MIPS of every host, plus the probe of the best fit searches. */
+	private double[] availableMips = new double[0];
+
+	/** The residual RAM of every host. */
+	private long[] availableRam = new long[0];
+
+	/** The residual bandwidth of every host. */
+	private long[] availableBw = new long[0];
+
+	/** The size of the max tree, a power of 2 at least the number of hosts. */
+	private int treeSize;
+
+	/** The max tree of the residual MIPS, for the first fit; node i has children 2i and 2i+1. */
+	private double[] maxMips = new double[0];
+
+	/** The max tree of the residual RAM. */
+	private long[] maxRam = new long[0];
+
+	/** The max tree of the residual bandwidth. */
+	private long[] maxBw = new long[0];
+
+	/** The hosts by residual MIPS and position, for the best fit. */
+	private final TreeSet<Integer> hostsByAvailableMips = new TreeSet<Integer>(new Comparator<Integer>() {
+
+		@Override
+		public int compare(Integer a, Integer b) {
+			int result = Double.compare(availableMips[a], availableMips[b]);
+			if (result == 0 && a.intValue() != b.intValue()) {
+				// the probe sorts before the hosts of the same residual MIPS
+				int probe = hosts.size();
+				result = a == probe ? -1 : (b == probe ? 1 : (a < b ? -1 : 1));
+			}
+			return result;
+		}
+	});
+
+	/**
+	 * Instantiates a new PowerVmBatchPlacement placing the VMs by best fit.
+	 */
+	public PowerVmBatchPlacement() {
+		this(Fit.BEST_FIT);
+	}
+
+	/**
+	 * Instantiates a new PowerVmBatchPlacement.
+	 *
+	 * @param fit the rule choosing among the hosts that fit a VM
+	 */
+	public PowerVmBatchPlacement(Fit fit) {
+		this.fit = fit;
+	}
+
+	/**
+	 * Places a batch of VMs on the hosts, in the given order. The placements are recorded in the
+	 * overlay; the VMs no host takes are left out of the migration plan.
+	 *
+	 * @param vms the VMs to place, in placement order
+	 * @param hostList the candidate hosts
+	 * @param excludedHosts the hosts that aren't selected as destination hosts
+	 * @param placementOverlay the placement overlay the residual capacity is read through
+	 * @param filter the check of the hosts that fit a VM
+	 * @return the migration plan, in placement order
+	 */
+	public PowerMigrationPlan place(
+			Iterable<? extends Vm> vms,
+			List<? extends PowerHost> hostList,
+			Set<? extends Host> excludedHosts,
+			PowerPlacementOverlay placementOverlay,
+			HostFilter filter) {
+		build(hostList, excludedHosts, placementOverlay);
+		PowerMigrationPlan migrationPlan = new PowerMigrationPlan();
+		for (Vm vm : vms) {
+			int position = getFit() == Fit.FIRST_FIT
+					? findFirstFit(vm, placementOverlay, filter)
+					: findBestFit(vm, placementOverlay, filter);
+			if (position < 0) {
+				continue;
+			}
+			PowerHost host = hosts.get(position);
+			if (getFit() == Fit.BEST_FIT) {
+				hostsByAvailableMips.remove(position);
+			}
+			placementOverlay.place(vm, host);
+			update(position, placementOverlay);
+			migrationPlan.add(vm, host);
+		}
+		hosts.clear();
+		hostsByAvailableMips.clear();
+		return migrationPlan;
+	}
+
+	/**
+	 * Builds the residual capacity structure of the batch.
+	 *
+	 * @param hostList the candidate hosts
+	 * @param excludedHosts the excluded hosts
+	 * @param placementOverlay the placement overlay
+	 */
+	protected void build(
+			List<? extends PowerHost> hostList,
+			Set<? extends Host> excludedHosts,
+			PowerPlacementOverlay placementOverlay) {
+		hosts.clear();
+		hostsByAvailableMips.clear();
+		for (PowerHost host : hostList) {
+			if (!excludedHosts.contains(host)) {
+				hosts.add(host);
+			}
+		}
+		int n = hosts.size();
+		availableMips = new double[n + 1];
+		availableRam = new long[n];
+		availableBw = new long[n];
+		treeSize = 1;
+		while (treeSize < n) {
+			treeSize <<= 1;
+		}
+		if (getFit() == Fit.FIRST_FIT) {
+			maxMips = new double[2 * treeSize];
+			maxRam = new long[2 * treeSize];
+			maxBw = new long[2 * treeSize];
+			Arrays.fill(maxMips, Double.NEGATIVE_INFINITY);
+			Arrays.fill(maxRam, Long.MIN_VALUE);
+			Arrays.fill(maxBw, Long.MIN_VALUE);
+		}
+		for (int position = 0; position < n; position++) {
+			update(position, placementOverlay);
+		}
+	}
+
+	/**
+	 * Reads the residual capacity of a host from the overlay into the structure.
+	 *
+	 * @param position the position of the host
+	 * @param placementOverlay the placement overlay
+	 */
+	private void update(int position, PowerPlacementOverlay placementOverlay) {
+		PowerHost host = hosts.get(position);
+		availableMips[position] = placementOverlay.getAvailableMips(host);
+		availableRam[position] = placementOverlay.getAvailableRam(host);
+		availableBw[position] = placementOverlay.getAvailableBw(host);
+		if (getFit() == Fit.BEST_FIT) {
+			hostsByAvailableMips.add(position);
+			return;
+		}
+		int node = treeSize + position;
+		maxMips[node] = availableMips[position];
+		maxRam[node] = availableRam[position];
+		maxBw[node] = availableBw[position];
+		for (node >>= 1; node > 0; node >>= 1) {
+			maxMips[node] = Math.max(maxMips[2 * node], maxMips[2 * node + 1]);
+			maxRam[node] = Math.max(maxRam[2 * node], maxRam[2 * node + 1]);
+			maxBw[node] = Math.max(maxBw[2 * node], maxBw[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * Finds the first host, in host list order, that fits a VM and is accepted.
+	 *
+	 * @param vm the vm
+	 * @param placementOverlay the placement overlay
+	 * @param filter the check of the hosts that fit the VM
+	 * @return the position of the host, or -1 if none
+	 */
+	private int findFirstFit(Vm vm, PowerPlacementOverlay placementOverlay, HostFilter filter) {
+		double mips = vm.getCurrentRequestedTotalMips();
+		long ram = vm.getCurrentRequestedRam();
+		long bw = vm.getCurrentRequestedBw();
+		int position = findFirst(1, 0, treeSize, 0, mips, ram, bw);
+		while (position >= 0) {
+			PowerHost host = hosts.get(position);
+			if (placementOverlay.isSuitableForVm(host, vm) && filter.accepts(host, vm)) {
+				return position;
+			}
+			position = findFirst(1, 0, treeSize, position + 1, mips, ram, bw);
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first position of a subtree, from a given position on, whose residual MIPS, RAM
+	 * and bandwidth fit the demand.
+	 *
+	 * @param node the root of the subtree
+	 * @param low the first position covered by the subtree
+	 * @param high the position after the subtree
+	 * @param from the first position searched
+	 * @param mips the requested MIPS
+	 * @param ram the requested RAM
+	 * @param bw the requested bandwidth
+	 * @return the position, or -1 if none
+	 */
+	private int findFirst(int node, int low, int high, int from, double mips, long ram, long bw) {
+		if (high <= from || maxMips[node] < mips || maxRam[node] < ram || maxBw[node] < bw) {
+			return -1;
+		}
+		if (high - low == 1) {
+			return low;
+		}
+		int middle = (low + high) >>> 1;
+		int position = findFirst(2 * node, low, middle, from, mips, ram, bw);
+		if (position < 0) {
+			position = findFirst(2 * node + 1, middle, high, from, mips, ram, bw);
+		}
+		return position;
+	}
+
+	/**
+	 * Finds the host of least residual MIPS that fits a VM and is accepted.
+	 *
+	 * @param vm the vm
+	 * @param placementOverlay the placement overlay
+	 * @param filter the check of the hosts that fit the VM
+	 * @return the position of the host, or -1 if none
+	 */
+	private int findBestFit(Vm vm, PowerPlacementOverlay placementOverlay, HostFilter filter) {
+		int probe = hosts.size();
+		availableMips[probe] = vm.getCurrentRequestedTotalMips();
+		long ram = vm.getCurrentRequestedRam();
+		long bw = vm.getCurrentRequestedBw();
+		for (Integer position : hostsByAvailableMips.tailSet(probe, false)) {
+			if (availableRam[position] < ram || availableBw[position] < bw) {
+				continue;
+			}
+			PowerHost host = hosts.get(position);
+			if (placementOverlay.isSuitableForVm(host, vm) && filter.accepts(host, vm)) {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the rule choosing among the hosts that fit a VM.
+	 *
+	 * @return the fit rule
+	 */
+	public Fit getFit() {
+		return fit;
+	}
+
+}
@@ -32,6 +32,9 @@ import org.cloudbus.cloudsim.Vm;
  */
 public abstract class PowerVmSelectionPolicy {
 
+	/** The placement overlay of the optimization in progress, or null. */
+	private PowerPlacementOverlay placementOverlay;
+
 	/**
 	 * Gets a VM to migrate from a given host.
 	 * 
@@ -48,7 +51,10 @@ public abstract class PowerVmSelectionPolicy {
 	 */
 	protected List<PowerVm> getMigratableVms(PowerHost host) {
 		List<PowerVm> migratableVms = new ArrayList<PowerVm>();
-		for (PowerVm vm : host.<PowerVm> getVmList()) {
+		List<PowerVm> vmList = getPlacementOverlay() == null
+				? host.<PowerVm> getVmList()
+				: getPlacementOverlay().<PowerVm> getVmList(host);
+		for (PowerVm vm : vmList) {
 			if (!vm.isInMigration()) {
 				migratableVms.add(vm);
 			}
@@ -56,4 +62,23 @@ public abstract class PowerVmSelectionPolicy {
 		return migratableVms;
 	}
 
+	/**
+	 * Gets the placement overlay VMs are selected on.
+	 * 
+	 * @return the placement overlay, or null if VMs are selected on the hosts
+	 */
+	public PowerPlacementOverlay getPlacementOverlay() {
+		return placementOverlay;
+	}
+
+	/**
+	 * Sets the placement overlay VMs are selected on, so that the VMs already selected for
+	 * migration by the plan in progress are no longer migratable.
+	 * 
+	 * @param placementOverlay the placement overlay, or null to select VMs on the hosts
+	 */
+	public void setPlacementOverlay(PowerPlacementOverlay placementOverlay) {
+		this.placementOverlay = placementOverlay;
+	}
+
 }
@@ -162,4 +162,12 @@ public class PowerVmSelectionPolicyMaximumCorrelation extends PowerVmSelectionPo
 		this.fallbackPolicy = fallbackPolicy;
 	}
 
+	@Override
+	public void setPlacementOverlay(PowerPlacementOverlay placementOverlay) {
+		super.setPlacementOverlay(placementOverlay);
+		if (getFallbackPolicy() != null) {
+			getFallbackPolicy().setPlacementOverlay(placementOverlay);
+		}
+	}
+
 }
@@ -0,0 +1,315 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Selects the number of clusters (k) of a k-means run by scoring candidate values of k on the
+ * points loaded in a {@link KMeansClusterer}: every candidate is seeded and run, then scored with
+ * a sampled silhouette or with the elbow of the inertia curve.
+ *
+ * <br/>The candidates are evaluated in increasing order until the distance computation budget is
+ * spent, so the selection cost is bounded whatever the size of the fleet; the best candidate
+ * evaluated so far wins. The selected k is cached per fleet shape
+ * ({@link KMeansClusterer#getPointsSignature()}), so an unchanged fleet costs no evaluation.
+ */
+public class ClusterCountSelector {
+
+	/**
+	 * The criterion scoring the candidate values of k.
+	 */
+	public enum Criterion {
+
+		/** The k with the highest sampled silhouette. */
+		SILHOUETTE,
+
+		/** The k at the knee of the inertia curve. */
+		ELBOW
+	}
+
+	/** The default smallest candidate k. */
+	public static final int DEFAULT_MIN_CLUSTERS = 3;
+
+	/** The default largest candidate k. */
+	public static final int DEFAULT_MAX_CLUSTERS = 12;
+
+	/** The default number of points sampled by the silhouette. */
+	public static final int DEFAULT_SAMPLE_SIZE = 128;
+
+	/** The default budget of point-to-point and point-to-centroid distance computations. */
+	public static final long DEFAULT_BUDGET = 2000000;
+
+	/** The default number of fleet shapes whose selected k is cached. */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	/** The criterion scoring the candidates. */
+	private Criterion criterion = Criterion.SILHOUETTE;
+
+	/** The smallest candidate k. */
+	private int minClusters = DEFAULT_MIN_CLUSTERS;
+
+	/** The largest candidate k. */
+	private int maxClusters = DEFAULT_MAX_CLUSTERS;
+
+	/** The number of points sampled by the silhouette. */
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+	/** The budget of distance computations per selection. */
+	private long budget = DEFAULT_BUDGET;
+
+	/** The selected k per fleet shape, least recently used first. */
+	private final Map<Long, Integer> cache = new LinkedHashMap<Long, Integer>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+			return size() > DEFAULT_CACHE_SIZE;
+		}
+	};
+
+	/** The number of selections answered from the cache. */
+	private int cacheHits;
+
+	/** The number of candidates evaluated by the last selection. */
+	private int evaluatedCandidates;
+
+	/** The distance computations spent by the last selection. */
+	private long spentBudget;
+
+	/**
+	 * Selects the number of clusters of the points loaded in the given engine. The engine is used
+	 * to evaluate the candidates, so its centroids and assignments must be set again afterwards.
+	 *
+	 * @param clusterer the engine, with the points to cluster loaded
+	 * @param maxIterations the maximum number of iterations of every candidate run
+	 * @return the selected k, or 0 if there are fewer distinct points than the smallest candidate
+	 */
+	public int select(KMeansClusterer clusterer, int maxIterations) {
+		evaluatedCandidates = 0;
+		spentBudget = 0;
+		int largest = Math.min(getMaxClusters(), clusterer.getNumberOfPoints());
+		if (largest < getMinClusters()) {
+			return 0;
+		}
+		Long signature = clusterer.getPointsSignature();
+		Integer cached = cache.get(signature);
+		if (cached != null) {
+			cacheHits++;
+			return cached;
+		}
+
+		int candidates = largest - getMinClusters() + 1;
+		double[] scores = new double[candidates];
+		int n = clusterer.getNumberOfPoints();
+		int sample = Math.min(getSampleSize(), n);
+		// trial runs are not reported to the listener
+		ClusteringListener listener = clusterer.getListener();
+		clusterer.setListener(null);
+		try {
+			for (int c = 0; c < candidates; c++) {
+				if (c > 0 && spentBudget >= getBudget()) {
+					break;
+				}
+				int k = getMinClusters() + c;
+				clusterer.seedFarthestFromMean(k);
+				clusterer.run(maxIterations);
+				spentBudget += (long) k * n + clusterer.getDistanceComputations();
+				if (getCriterion() == Criterion.SILHOUETTE) {
+					scores[c] = clusterer.getSampledSilhouette(sample);
+					spentBudget += (long) sample * sample;
+				} else {
+					scores[c] = clusterer.getInertia();
+					spentBudget += n;
+				}
+				evaluatedCandidates++;
+			}
+		} finally {
+			clusterer.setListener(listener);
+		}
+
+		int best = getCriterion() == Criterion.SILHOUETTE
+				? getHighestScore(scores, evaluatedCandidates)
+				: getKnee(scores, evaluatedCandidates);
+		int k = getMinClusters() + best;
+		cache.put(signature, k);
+		return k;
+	}
+
+	/**
+	 * Gets the index of the highest score, the lowest index winning ties.
+	 *
+	 * @param scores the scores
+	 * @param count the number of scores
+	 * @return the index of the highest score
+	 */
+	protected static int getHighestScore(double[] scores, int count) {
+		int best = 0;
+		for (int c = 1; c < count; c++) {
+			if (scores[c] > scores[best]) {
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gets the knee of a decreasing curve: the point farthest below the chord joining its first
+	 * and last points. A curve of fewer than three points has no knee, and its first point is
+	 * returned.
+	 *
+	 * @param values the values of the curve
+	 * @param count the number of values
+	 * @return the index of the knee
+	 */
+	protected static int getKnee(double[] values, int count) {
+		int knee = 0;
+		if (count < 3) {
+			return knee;
+		}
+		double first = values[0];
+		double slope = (values[count - 1] - first) / (count - 1);
+		double maxGap = 0;
+		for (int c = 1; c < count - 1; c++) {
+			double gap = first + slope * c - values[c];
+			if (gap > maxGap) {
+				maxGap = gap;
+				knee = c;
+			}
+		}
+		return knee;
+	}
+
+	/**
+	 * Drops the cached selections.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Gets the criterion scoring the candidates.
+	 *
+	 * @return the criterion
+	 */
+	public Criterion getCriterion() {
+		return criterion;
+	}
+
+	/**
+	 * Sets the criterion scoring the candidates. The cache is dropped.
+	 *
+	 * @param criterion the new criterion
+	 */
+	public void setCriterion(Criterion criterion) {
+		this.criterion = criterion;
+		clearCache();
+	}
+
+	/**
+	 * Gets the smallest candidate k.
+	 *
+	 * @return the smallest candidate k
+	 */
+	public int getMinClusters() {
+		return minClusters;
+	}
+
+	/**
+	 * Gets the largest candidate k.
+	 *
+	 * @return the largest candidate k
+	 */
+	public int getMaxClusters() {
+		return maxClusters;
+	}
+
+	/**
+	 * Sets the range of candidate values of k. The cache is dropped.
+	 *
+	 * @param minClusters the smallest candidate k
+	 * @param maxClusters the largest candidate k
+	 */
+	public void setClusterRange(int minClusters, int maxClusters) {
+		if (minClusters < 2 || maxClusters < minClusters) {
+			throw new IllegalArgumentException("Invalid range of clusters: " + minClusters + ".." + maxClusters);
+		}
+		this.minClusters = minClusters;
+		this.maxClusters = maxClusters;
+		clearCache();
+	}
+
+	/**
+	 * Gets the number of points sampled by the silhouette.
+	 *
+	 * @return the sample size
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Sets the number of points sampled by the silhouette. The cache is dropped.
+	 *
+	 * @param sampleSize the new sample size
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+		clearCache();
+	}
+
+	/**
+	 * Gets the budget of distance computations per selection.
+	 *
+	 * @return the budget
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the budget of distance computations per selection. The first candidate is always
+	 * evaluated; the next ones only while the budget is not spent.
+	 *
+	 * @param budget the new budget
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Gets the number of selections answered from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public int getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Gets the number of candidates evaluated by the last selection.
+	 *
+	 * @return the number of evaluated candidates; 0 if the selection was cached
+	 */
+	public int getEvaluatedCandidates() {
+		return evaluatedCandidates;
+	}
+
+	/**
+	 * Gets the distance computations spent by the last selection.
+	 *
+	 * @return the spent budget
+	 */
+	public long getSpentBudget() {
+		return spentBudget;
+	}
+
+}
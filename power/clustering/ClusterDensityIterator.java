@@ -0,0 +1,146 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * Iterates over clustered VMs, highest density cluster first. The density of a cluster is its
+ * number of VMs; ties are broken by the aggregate CPU demand of the clusters when enabled, then by
+ * cluster index. Within a cluster, VMs come by decreasing current CPU demand, ties keeping the
+ * cluster order.
+ *
+ * <br/>Clusters are ranked up front, which only needs their sizes (and demands), but a cluster is
+ * only sorted when the iteration reaches it, so a caller that stops early does not pay for the
+ * clusters it never visits.
+ *
+ * @param <T> the type of the VMs
+ */
+public class ClusterDensityIterator<T extends Vm> implements Iterator<T> {
+
+	/** The clusters. */
+	private final List<? extends List<? extends T>> clusters;
+
+	/** The cluster indexes, highest density first. */
+	private final Integer[] ranking;
+
+	/** The position of the current cluster in the ranking. */
+	private int rank = -1;
+
+	/** The VMs of the current cluster, by decreasing CPU demand. */
+	private Integer[] order = new Integer[0];
+
+	/** The size of the current cluster. */
+	private int size;
+
+	/** The position of the next VM in the current cluster. */
+	private int position;
+
+	/**
+	 * Instantiates a new ClusterDensityIterator.
+	 *
+	 * @param clusters the clusters of VMs
+	 * @param rankByDemand whether clusters of the same size are ranked by aggregate CPU demand
+	 */
+	public ClusterDensityIterator(List<? extends List<? extends T>> clusters, boolean rankByDemand) {
+		this.clusters = clusters;
+		int k = clusters.size();
+		final int[] sizes = new int[k];
+		final double[] demands = new double[k];
+		ranking = new Integer[k];
+		for (int c = 0; c < k; c++) {
+			List<? extends T> cluster = clusters.get(c);
+			sizes[c] = cluster.size();
+			if (rankByDemand) {
+				for (T vm : cluster) {
+					demands[c] += getDemand(vm);
+				}
+			}
+			ranking[c] = c;
+		}
+		Arrays.sort(ranking, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				if (sizes[a] != sizes[b]) {
+					return sizes[b] - sizes[a];
+				}
+				return Double.compare(demands[b], demands[a]);
+			}
+		});
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (position >= size) {
+			if (rank + 1 >= ranking.length) {
+				return false;
+			}
+			rank++;
+			sortCluster(clusters.get(ranking[rank]));
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return clusters.get(ranking[rank]).get(order[position++]);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Makes the given cluster the current one, its VMs ordered by decreasing CPU demand.
+	 *
+	 * @param cluster the cluster
+	 */
+	private void sortCluster(List<? extends T> cluster) {
+		size = cluster.size();
+		position = 0;
+		if (order.length < size) {
+			order = new Integer[size];
+		}
+		final double[] demands = new double[size];
+		for (int i = 0; i < size; i++) {
+			demands[i] = getDemand(cluster.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, 0, size, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(demands[b], demands[a]);
+			}
+		});
+	}
+
+	/**
+	 * Gets the current CPU demand of a VM.
+	 *
+	 * @param vm the VM
+	 * @return the CPU demand, in MIPS
+	 */
+	private static double getDemand(Vm vm) {
+		return vm.getTotalUtilizationOfCpuMips(CloudSim.clock());
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A listener of the clustering of the VMs to migrate, receiving the number of clusters, the
+ * seeds, every iteration and the final clusters. Events are only built when a listener is
+ * registered, so the clustering path costs a null check when nothing listens.
+ *
+ * <br/>The centroid arrays passed to the listener are copies it may keep.
+ *
+ * @see KMeansClusterer#setListener(ClusteringListener)
+ * @see org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationAbstract#setClusteringListener(ClusteringListener)
+ */
+public interface ClusteringListener {
+
+	/**
+	 * Called when the number of clusters of the VMs to migrate is known.
+	 *
+	 * @param k the number of clusters; the VMs are only clustered if it is greater than 2
+	 * @param numberOfVms the number of VMs to cluster
+	 * @param warmStart true, if k is carried over from the previous interval
+	 */
+	void numberOfClustersSelected(int k, int numberOfVms, boolean warmStart);
+
+	/**
+	 * Called when the initial centroids are set.
+	 *
+	 * @param centroids the initial centroids, one row per cluster
+	 * @param warmStart true, if the centroids are carried over from the previous interval
+	 */
+	void seedsChosen(double[][] centroids, boolean warmStart);
+
+	/**
+	 * Called after every iteration of an iterative algorithm.
+	 *
+	 * @param iteration the iteration number, starting at 1
+	 * @param assignmentChanges the number of VMs whose cluster changed, or -1 if the algorithm
+	 *            does not assign all VMs in its iterations
+	 * @param centroids the centroids after the iteration
+	 */
+	void iterationCompleted(int iteration, int assignmentChanges, double[][] centroids);
+
+	/**
+	 * Called when the VMs to migrate are clustered.
+	 *
+	 * @param algorithm the name of the clustering algorithm
+	 * @param clusters the clusters
+	 * @param centroids the final centroids, or null if the algorithm has none
+	 */
+	void clustersFormed(String algorithm, List<? extends List<? extends Vm>> clusters, double[][] centroids);
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A clustering listener writing the events to the simulation {@link Log}, so that they follow
+ * {@link Log#isDisabled()}. Nothing is formatted while the log is disabled.
+ */
+public class ClusteringLogListener implements ClusteringListener {
+
+	/** Whether every iteration is logged, not only the seeds and the final clusters. */
+	private final boolean verbose;
+
+	/**
+	 * Instantiates a new ClusteringLogListener logging the seeds and the final clusters.
+	 */
+	public ClusteringLogListener() {
+		this(false);
+	}
+
+	/**
+	 * Instantiates a new ClusteringLogListener.
+	 *
+	 * @param verbose true to also log every iteration
+	 */
+	public ClusteringLogListener(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	@Override
+	public void numberOfClustersSelected(int k, int numberOfVms, boolean warmStart) {
+		if (Log.isDisabled()) {
+			return;
+		}
+		Log.printConcatLine("Clustering ", numberOfVms, " VMs into ", k, " clusters", warmStart ? " (warm start)" : "");
+	}
+
+	@Override
+	public void seedsChosen(double[][] centroids, boolean warmStart) {
+		if (Log.isDisabled()) {
+			return;
+		}
+		Log.printConcatLine("Initial centroids", warmStart ? " (warm start)" : "", ": ", Arrays.deepToString(centroids));
+	}
+
+	@Override
+	public void iterationCompleted(int iteration, int assignmentChanges, double[][] centroids) {
+		if (!verbose || Log.isDisabled()) {
+			return;
+		}
+		Log.printConcatLine("Iteration ", iteration, ": ", assignmentChanges, " VMs changed cluster, centroids ",
+				Arrays.deepToString(centroids));
+	}
+
+	@Override
+	public void clustersFormed(String algorithm, List<? extends List<? extends Vm>> clusters, double[][] centroids) {
+		if (Log.isDisabled()) {
+			return;
+		}
+		StringBuilder sizes = new StringBuilder();
+		for (List<? extends Vm> cluster : clusters) {
+			sizes.append(sizes.length() == 0 ? "" : " ").append(cluster.size());
+		}
+		Log.printConcatLine(algorithm, ": ", clusters.size(), " clusters of sizes [", sizes, "]");
+		if (centroids != null) {
+			Log.printConcatLine("Final centroids: ", Arrays.deepToString(centroids));
+		}
+	}
+
+	/**
+	 * Checks whether every iteration is logged.
+	 *
+	 * @return true, if every iteration is logged
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A DBSCAN algorithm: clusters are the regions where VMs are dense, without any number of
+ * clusters to choose. A point whose neighborhood (the points within eps) holds at least minVms
+ * VMs is a core point; clusters are the connected core points plus the points in their
+ * neighborhoods. Every remaining (noise) point becomes a cluster of its own, so that all VMs
+ * are still placed, after the dense clusters by the density ordering.
+ *
+ * <br/>The algorithm works on the distinct, weighted points of the engine and costs O(points^2).
+ * When eps is not set, it is estimated as the median, over the points, of the distance within
+ * which minVms other VMs are found; the VMs sharing the point are left out, as they would make
+ * the estimate 0 on fleets of a few VM types.
+ */
+public class DbscanClusteringAlgorithm implements VmClusteringAlgorithm {
+
+	/** The name of the algorithm. */
+	public static final String NAME = "dbscan";
+
+	/** The default minimum number of VMs in the neighborhood of a core point. */
+	public static final int DEFAULT_MIN_VMS = 4;
+
+	/** The label of a point not visited yet. */
+	private static final int UNVISITED = -2;
+
+	/** The label of a noise point. */
+	private static final int NOISE = -1;
+
+	/** The neighborhood radius, or 0 to estimate it from the points. */
+	private final double eps;
+
+	/** The minimum number of VMs in the neighborhood of a core point. */
+	private final int minVms;
+
+	/** The neighborhood radius used by the last run. */
+	private double lastEps;
+
+	/** The number of points found by the last neighborhood query. */
+	private int neighborCount;
+
+	/**
+	 * Instantiates a new DbscanClusteringAlgorithm with an estimated radius and the default
+	 * minimum number of VMs.
+	 */
+	public DbscanClusteringAlgorithm() {
+		this(0, DEFAULT_MIN_VMS);
+	}
+
+	/**
+	 * Instantiates a new DbscanClusteringAlgorithm.
+	 *
+	 * @param eps the neighborhood radius, in feature units, or 0 to estimate it from the points
+	 * @param minVms the minimum number of VMs in the neighborhood of a core point
+	 */
+	public DbscanClusteringAlgorithm(double eps, int minVms) {
+		this.eps = eps;
+		this.minVms = minVms;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isCentroidBased() {
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends Vm> List<List<T>> cluster(KMeansClusterer points, List<? extends Vm> vms, int k, double[][] seeds) {
+		int n = points.getNumberOfPoints();
+		lastEps = eps > 0 ? eps : estimateEps(points);
+		int[] labels = new int[n];
+		Arrays.fill(labels, UNVISITED);
+		int[] neighbors = new int[n];
+		int[] queue = new int[n];
+		int clusters = 0;
+		for (int i = 0; i < n; i++) {
+			if (labels[i] != UNVISITED) {
+				continue;
+			}
+			if (getNeighbors(points, i, neighbors) < minVms) {
+				labels[i] = NOISE;
+				continue;
+			}
+			int cluster = clusters++;
+			labels[i] = cluster;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = i;
+			while (head < tail) {
+				if (getNeighbors(points, queue[head++], neighbors) < minVms) {
+					// a border point: part of the cluster, but not expanding it
+					continue;
+				}
+				for (int m = 0; m < neighborCount; m++) {
+					int neighbor = neighbors[m];
+					if (labels[neighbor] == UNVISITED || labels[neighbor] == NOISE) {
+						if (labels[neighbor] == UNVISITED) {
+							queue[tail++] = neighbor;
+						}
+						labels[neighbor] = cluster;
+					}
+				}
+			}
+		}
+
+		// noise points come after the dense clusters, one cluster per point
+		int[] clusterOfPoint = new int[n];
+		int total = clusters;
+		for (int i = 0; i < n; i++) {
+			clusterOfPoint[i] = labels[i] == NOISE ? total++ : labels[i];
+		}
+		List<List<T>> result = new ArrayList<List<T>>(total);
+		for (int c = 0; c < total; c++) {
+			result.add(new ArrayList<T>());
+		}
+		int v = 0;
+		for (Vm vm : vms) {
+			result.get(clusterOfPoint[points.getVmPoint(v++)]).add((T) vm);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the points within eps of a point, the point included. Their number is left in
+	 * {@link #neighborCount}.
+	 *
+	 * @param points the engine holding the points
+	 * @param point the point index
+	 * @param neighbors the buffer receiving the neighbor indexes
+	 * @return the number of VMs in the neighborhood
+	 */
+	private int getNeighbors(KMeansClusterer points, int point, int[] neighbors) {
+		int n = points.getNumberOfPoints();
+		int count = 0;
+		int weight = 0;
+		for (int j = 0; j < n; j++) {
+			if (points.pointDistance(point, j) <= lastEps) {
+				neighbors[count++] = j;
+				weight += points.getWeight(j);
+			}
+		}
+		neighborCount = count;
+		return weight;
+	}
+
+	/**
+	 * Estimates the neighborhood radius as the median, over the points, of the smallest distance
+	 * within which minVms VMs of other points are found.
+	 *
+	 * @param points the engine holding the points
+	 * @return the estimated radius
+	 */
+	protected double estimateEps(KMeansClusterer points) {
+		int n = points.getNumberOfPoints();
+		double[] coreDistances = new double[n];
+		double[] distances = new double[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				distances[j] = points.pointDistance(i, j);
+				order[j] = j;
+			}
+			final double[] row = distances;
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(row[a], row[b]);
+				}
+			});
+			int weight = 0;
+			coreDistances[i] = distances[order[n - 1]];
+			for (int j = 0; j < n; j++) {
+				if (order[j] == i) {
+					continue;
+				}
+				weight += points.getWeight(order[j]);
+				if (weight >= minVms) {
+					coreDistances[i] = distances[order[j]];
+					break;
+				}
+			}
+		}
+		Arrays.sort(coreDistances);
+		return coreDistances[n / 2];
+	}
+
+	/**
+	 * Gets the neighborhood radius used by the last run.
+	 *
+	 * @return the radius
+	 */
+	public double getLastEps() {
+		return lastEps;
+	}
+
+	@Override
+	public double[][] getCentroids() {
+		return null;
+	}
+
+}
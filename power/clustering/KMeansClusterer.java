@@ -0,0 +1,1253 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A k-means clustering engine for VMs that keeps every point, centroid and assignment
+ * in flat primitive arrays. Points are stored row-major in a single <tt>double[]</tt>
+ * (<tt>point * dimensions + feature</tt>), so an assignment step touches no boxed values
+ * and allocates nothing.
+ *
+ * <br/>The buffers are owned by the engine and only grow, so a single instance kept by an
+ * allocation policy is reused across k-means iterations and across optimization intervals.
+ *
+ * <br/>The engine reproduces the clusters of the original list based implementation
+ * ({@link org.cloudbus.cloudsim.power.lists.PowerVmList#returnCluster(List, double[][])}):
+ * the same Euclidean distance, ties resolved to the lowest cluster index, and centroid sums
+ * accumulated in VM order. An empty cluster gets a NaN centroid and never attracts a VM again.
+ *
+ * <br/>The assignment step can run on a {@link ForkJoinPool}. Every chunk of points writes
+ * its own partial centroid sums, which are reduced in chunk order, so parallel and sequential
+ * runs give bit-identical results. An instance itself must not be shared between threads.
+ *
+ * <br/>In accelerated mode ({@link #setAccelerated(boolean)}) the assignment step keeps distance
+ * bounds per point and skips the points that provably keep their cluster. A run stops when the
+ * centroids stop moving (exactly, or within {@link #getTolerance()}) or when no more than
+ * {@link #getAssignmentChangeThreshold()} VMs changed cluster.
+ *
+ * <br/>VMs come from a handful of instance types, so many of them share the same feature vector.
+ * In deduplicating mode (the default), identical vectors are loaded once as a weighted point,
+ * the weight being the number of VMs sharing it, and the VM assignments are expanded from the
+ * point assignments. Seeding and iterations then cost O(types * k) instead of O(VMs * k), with
+ * the same clusters up to the floating-point rounding of the weighted sums.
+ *
+ * @see org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationAbstract#MK(java.util.Set, List)
+ */
+public class KMeansClusterer {
+
+	/** The number of dimensions of a point loaded from VMs directly: MIPS and RAM. */
+	public static final int DEFAULT_DIMENSIONS = 2;
+
+	/** The default maximum number of assignment/update iterations. */
+	public static final int DEFAULT_MAX_ITERATIONS = 10;
+
+	/**
+	 * The number of points per chunk of partial centroid sums. It is fixed, and not derived
+	 * from the parallelism, so that sequential and parallel runs add the same values in the
+	 * same order and produce bit-identical centroids.
+	 */
+	public static final int CHUNK_SIZE = 256;
+
+	/** The default minimum number of points for the assignment step to run in parallel. */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 4 * CHUNK_SIZE;
+
+	/** The number of features per point. */
+	private int dimensions = DEFAULT_DIMENSIONS;
+
+	/** The number of loaded points (distinct feature vectors when deduplicating). */
+	private int numberOfPoints;
+
+	/** The number of VMs the points were loaded from. */
+	private int numberOfVms;
+
+	/** Whether identical feature vectors are loaded once, as a weighted point. */
+	private boolean deduplicating = true;
+
+	/** The number of clusters (k). */
+	private int numberOfClusters;
+
+	/** The points, row-major. */
+	private double[] points = new double[0];
+
+	/** The current centroids, row-major. */
+	private double[] centroids = new double[0];
+
+	/** The centroids before the last update, row-major. */
+	private double[] previousCentroids = new double[0];
+
+	/** The per-cluster feature sums used by the update step. */
+	private double[] sums = new double[0];
+
+	/** The number of points per cluster after the last update. */
+	private int[] counts = new int[0];
+
+	/** The cluster index of every point. */
+	private int[] assignments = new int[0];
+
+	/** The number of VMs sharing every point. */
+	private int[] weights = new int[0];
+
+	/** The point index of every VM. */
+	private int[] vmPoints = new int[0];
+
+	/** The open-addressing hash table of the point indexes used by the deduplication. */
+	private int[] pointTable = new int[0];
+
+	/** The scratch buffer for the seeding distances. */
+	private double[] distanceBuffer = new double[0];
+
+	/** The partial feature sums per chunk and cluster. */
+	private double[] chunkSums = new double[0];
+
+	/** The partial point counts per chunk and cluster. */
+	private int[] chunkCounts = new int[0];
+
+	/** The number of changed assignments per chunk. */
+	private int[] chunkChanged = new int[0];
+
+	/** The fork/join pool of the parallel assignment step, or null to run sequentially. */
+	private ForkJoinPool pool;
+
+	/** The minimum number of points for the assignment step to run in parallel. */
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/** The number of assignment/update iterations performed by the last run. */
+	private int iterations;
+
+	/** Whether the assignment step prunes distance computations with triangle-inequality bounds. */
+	private boolean accelerated;
+
+	/** Whether the bounds are valid for the current points and centroids. */
+	private boolean boundsValid;
+
+	/** The upper bound of the distance between every point and its centroid. */
+	private double[] upperBounds = new double[0];
+
+	/** The lower bound of the distance between every point and its second closest centroid. */
+	private double[] lowerBounds = new double[0];
+
+	/** Half the distance between every centroid and its closest other centroid. */
+	private double[] halfSeparations = new double[0];
+
+	/** The distance every centroid moved by since the last assignment. */
+	private double[] centroidShifts = new double[0];
+
+	/** The largest centroid shift since the last assignment. */
+	private double maxShift;
+
+	/** The second largest centroid shift since the last assignment. */
+	private double secondMaxShift;
+
+	/** The cluster whose centroid moved the most since the last assignment. */
+	private int maxShiftCluster = -1;
+
+	/** The largest distance a centroid moved by in the last update. */
+	private double lastMaxShift;
+
+	/** The number of point-to-centroid distances computed per chunk by the last assignment. */
+	private int[] chunkDistances = new int[0];
+
+	/** The number of point-to-centroid distances computed by the last run. */
+	private long distanceComputations;
+
+	/** The maximum centroid shift for the run to be considered converged; 0 requires exact equality. */
+	private double tolerance;
+
+	/** The number of changed assignments at or below which the run stops. */
+	private int assignmentChangeThreshold;
+
+	/** The listener of the seeds and iterations, or null. */
+	private ClusteringListener listener;
+
+	/**
+	 * Loads the MIPS and RAM of the given VMs as the points to be clustered.
+	 *
+	 * @param vms the VMs
+	 */
+	public void setPoints(List<? extends Vm> vms) {
+		int n = vms.size();
+		ensurePointCapacity(n, DEFAULT_DIMENSIONS);
+		dimensions = DEFAULT_DIMENSIONS;
+		boundsValid = false;
+		int offset = 0;
+		for (Vm vm : vms) {
+			points[offset] = vm.getMips();
+			points[offset + 1] = vm.getRam();
+			offset += DEFAULT_DIMENSIONS;
+		}
+		loadVms(n);
+	}
+
+	/**
+	 * Loads a feature matrix, one row of d features per VM, as the points to be clustered.
+	 *
+	 * @param features the feature matrix, row-major
+	 * @param n the number of VMs
+	 * @param d the number of features per VM
+	 * @see VmFeatureExtractor#extract(List)
+	 */
+	public void setPoints(double[] features, int n, int d) {
+		ensurePointCapacity(n, d);
+		dimensions = d;
+		boundsValid = false;
+		System.arraycopy(features, 0, points, 0, n * d);
+		loadVms(n);
+	}
+
+	/**
+	 * Turns the raw rows of n VMs, already written to the point buffer, into the points to
+	 * cluster: one point per VM, or one weighted point per distinct row when deduplicating.
+	 *
+	 * @param n the number of VMs
+	 */
+	protected void loadVms(int n) {
+		numberOfVms = n;
+		if (weights.length < n) {
+			weights = new int[n];
+			vmPoints = new int[n];
+		}
+		if (!isDeduplicating()) {
+			for (int i = 0; i < n; i++) {
+				weights[i] = 1;
+				vmPoints[i] = i;
+			}
+			numberOfPoints = n;
+			return;
+		}
+
+		int capacity = 2;
+		while (capacity < 2 * n) {
+			capacity <<= 1;
+		}
+		if (pointTable.length < capacity) {
+			pointTable = new int[capacity];
+		}
+		for (int slot = 0; slot < capacity; slot++) {
+			pointTable[slot] = -1;
+		}
+		int d = dimensions;
+		int mask = capacity - 1;
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			long hash = 0;
+			for (int j = 0; j < d; j++) {
+				hash = hash * 31 + Double.doubleToLongBits(points[i * d + j]);
+			}
+			int slot = (int) (hash ^ (hash >>> 32)) * 0x9E3779B9 & mask;
+			while (pointTable[slot] != -1 && !isSameRow(pointTable[slot], i)) {
+				slot = (slot + 1) & mask;
+			}
+			int point = pointTable[slot];
+			if (point == -1) {
+				// rows are compacted in place: a distinct row never moves after its VM
+				point = distinct++;
+				System.arraycopy(points, i * d, points, point * d, d);
+				weights[point] = 0;
+				pointTable[slot] = point;
+			}
+			weights[point]++;
+			vmPoints[i] = point;
+		}
+		numberOfPoints = distinct;
+	}
+
+	/**
+	 * Checks whether a loaded point and the raw row of a VM hold the same feature values.
+	 *
+	 * @param point the point index
+	 * @param row the row index of the VM
+	 * @return true, if every feature is bitwise equal
+	 */
+	private boolean isSameRow(int point, int row) {
+		int d = dimensions;
+		for (int j = 0; j < d; j++) {
+			if (Double.doubleToLongBits(points[point * d + j]) != Double.doubleToLongBits(points[row * d + j])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the current centroids. The number of clusters becomes the number of rows.
+	 *
+	 * @param initialCentroids the centroids, one row per cluster
+	 */
+	public void setCentroids(double[][] initialCentroids) {
+		int k = initialCentroids.length;
+		ensureClusterCapacity(k);
+		numberOfClusters = k;
+		boundsValid = false;
+		for (int c = 0; c < k; c++) {
+			System.arraycopy(initialCentroids[c], 0, centroids, c * dimensions, dimensions);
+		}
+	}
+
+	/**
+	 * Sets the initial centroids of a run: the given seeds, or k centroids seeded farthest
+	 * from the mean if there are none. The assignments left by a previous run on the same points
+	 * are reset, so that the first assignment counts every point as changed. The listener, if
+	 * any, is notified.
+	 *
+	 * @param k the number of clusters, used if there are no seeds
+	 * @param seeds the seeds, one row per cluster, or null
+	 */
+	public void seed(int k, double[][] seeds) {
+		if (seeds != null) {
+			resetAssignments();
+			setCentroids(seeds);
+		} else {
+			seedFarthestFromMean(k);
+		}
+		if (listener != null) {
+			listener.seedsChosen(getCentroids(), seeds != null);
+		}
+	}
+
+	/**
+	 * Seeds k centroids from the loaded points. The first centroid is the mean of all VMs;
+	 * every next centroid is the point farthest from the mean of the centroids chosen so far,
+	 * skipping points whose coordinates already appear among the chosen centroids. The
+	 * assignments of a previous run are reset, as by {@link #seed(int, double[][])}.
+	 *
+	 * @param k the number of clusters
+	 */
+	public void seedFarthestFromMean(int k) {
+		resetAssignments();
+		ensureClusterCapacity(k);
+		numberOfClusters = k;
+		boundsValid = false;
+		int n = numberOfPoints;
+		int d = dimensions;
+
+		for (int j = 0; j < d; j++) {
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += weights[i] * points[i * d + j];
+			}
+			centroids[j] = sum / numberOfVms;
+		}
+
+		double[] distances = ensureDistanceCapacity(n);
+		double[] average = new double[d];
+		for (int c = 1; c < k; c++) {
+			for (int j = 0; j < d; j++) {
+				double sum = 0;
+				for (int s = 0; s < c; s++) {
+					sum += centroids[s * d + j];
+				}
+				average[j] = sum / c;
+			}
+			for (int i = 0; i < n; i++) {
+				double sum = 0;
+				for (int j = 0; j < d; j++) {
+					double diff = average[j] - points[i * d + j];
+					sum += diff * diff;
+				}
+				distances[i] = Math.sqrt(sum);
+			}
+			double maxDistance = distances[0];
+			for (int i = 0; i < n; i++) {
+				if (isChosenCoordinate(i, c)) {
+					continue;
+				}
+				if (distances[i] > maxDistance) {
+					maxDistance = distances[i];
+				}
+			}
+			int chosen = 0;
+			while (chosen < n && distances[chosen] != maxDistance) {
+				chosen++;
+			}
+			if (chosen == n) {
+				chosen = 0;
+			}
+			System.arraycopy(points, chosen * d, centroids, c * d, d);
+		}
+	}
+
+	/**
+	 * Checks whether every coordinate of a point already appears, in the same dimension,
+	 * among the first centroids.
+	 *
+	 * @param point the point index
+	 * @param chosenCentroids the number of centroids chosen so far
+	 * @return true, if the point is considered already chosen
+	 */
+	private boolean isChosenCoordinate(int point, int chosenCentroids) {
+		int d = dimensions;
+		for (int j = 0; j < d; j++) {
+			double value = points[point * d + j];
+			boolean found = false;
+			for (int s = 0; s < chosenCentroids; s++) {
+				if (centroids[s * d + j] == value) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Runs assignment/update iterations until the centroids no longer move (within the tolerance),
+	 * no more than {@link #getAssignmentChangeThreshold()} VMs change cluster, or the maximum
+	 * number of iterations is reached. The centroids must have been set or seeded before.
+	 *
+	 * @param maxIterations the maximum number of iterations
+	 * @return the number of iterations performed
+	 */
+	public int run(int maxIterations) {
+		iterations = 0;
+		distanceComputations = 0;
+		while (iterations < maxIterations) {
+			iterations++;
+			int changed = assign();
+			update();
+			if (listener != null) {
+				listener.iterationCompleted(iterations, changed, getCentroids());
+			}
+			if (isConverged() || changed <= getAssignmentChangeThreshold()) {
+				break;
+			}
+		}
+		return iterations;
+	}
+
+	/**
+	 * Assigns every point to its nearest centroid and accumulates, per chunk of
+	 * {@link #CHUNK_SIZE} points, the partial feature sums and counts used by {@link #update()}.
+	 * With a fork/join pool set and at least {@link #getParallelThreshold()} points, the chunks
+	 * are processed concurrently.
+	 *
+	 * @return the number of VMs whose cluster changed
+	 */
+	public int assign() {
+		int chunks = getNumberOfChunks();
+		ensureChunkCapacity(chunks);
+		if (isAccelerated()) {
+			ensureBoundCapacity();
+			if (boundsValid) {
+				updateHalfSeparations();
+			}
+		}
+		if (isParallel(chunks)) {
+			getPool().invoke(new AssignTask(0, chunks));
+		} else {
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				assignChunk(chunk);
+			}
+		}
+		int changed = 0;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			changed += chunkChanged[chunk];
+			distanceComputations += chunkDistances[chunk];
+		}
+		boundsValid = isAccelerated();
+		for (int c = 0; c < numberOfClusters; c++) {
+			centroidShifts[c] = 0;
+		}
+		maxShift = 0;
+		secondMaxShift = 0;
+		maxShiftCluster = -1;
+		return changed;
+	}
+
+	/**
+	 * Assigns the points of one chunk to their nearest centroid and computes the partial
+	 * sums of the chunk. A chunk only writes its own slice of the buffers.
+	 *
+	 * @param chunk the chunk index
+	 */
+	protected void assignChunk(int chunk) {
+		int d = dimensions;
+		int k = numberOfClusters;
+		int from = chunk * CHUNK_SIZE;
+		int to = Math.min(numberOfPoints, from + CHUNK_SIZE);
+		int sumBase = chunk * k * d;
+		int countBase = chunk * k;
+		for (int i = 0; i < k * d; i++) {
+			chunkSums[sumBase + i] = 0;
+		}
+		for (int c = 0; c < k; c++) {
+			chunkCounts[countBase + c] = 0;
+		}
+		boolean bounded = isAccelerated() && boundsValid;
+		int changed = 0;
+		int computed = 0;
+		for (int i = from; i < to; i++) {
+			int base = i * d;
+			int current = assignments[i];
+			int nearest;
+			if (bounded) {
+				upperBounds[i] += centroidShifts[current];
+				lowerBounds[i] -= current == maxShiftCluster ? secondMaxShift : maxShift;
+				double bound = Math.max(halfSeparations[current], lowerBounds[i]);
+				if (upperBounds[i] < bound) {
+					nearest = current;
+				} else {
+					upperBounds[i] = distance(i, current);
+					computed++;
+					if (upperBounds[i] < bound) {
+						nearest = current;
+					} else {
+						nearest = nearestCentroid(i);
+						computed += k;
+					}
+				}
+			} else {
+				nearest = nearestCentroid(i);
+				computed += k;
+			}
+			int weight = weights[i];
+			if (current != nearest) {
+				changed += weight;
+			}
+			assignments[i] = nearest;
+			chunkCounts[countBase + nearest] += weight;
+			int cbase = sumBase + nearest * d;
+			for (int j = 0; j < d; j++) {
+				chunkSums[cbase + j] += weight * points[base + j];
+			}
+		}
+		chunkChanged[chunk] = changed;
+		chunkDistances[chunk] = computed;
+	}
+
+	/**
+	 * Finds the nearest centroid of a point, the lowest cluster index winning ties. In accelerated
+	 * mode, the bounds of the point are reset to the exact distances to the nearest and second
+	 * nearest centroids.
+	 *
+	 * @param point the point index
+	 * @return the nearest cluster index
+	 */
+	protected int nearestCentroid(int point) {
+		int d = dimensions;
+		int k = numberOfClusters;
+		int base = point * d;
+		double minDistance = Double.MAX_VALUE;
+		double secondDistance = Double.MAX_VALUE;
+		int nearest = 0;
+		for (int c = 0; c < k; c++) {
+			int cbase = c * d;
+			double sum = 0;
+			for (int j = 0; j < d; j++) {
+				double diff = centroids[cbase + j] - points[base + j];
+				sum += diff * diff;
+			}
+			double distance = Math.sqrt(sum);
+			if (distance < minDistance) {
+				secondDistance = minDistance;
+				minDistance = distance;
+				nearest = c;
+			} else if (distance < secondDistance) {
+				secondDistance = distance;
+			}
+		}
+		if (isAccelerated()) {
+			upperBounds[point] = minDistance;
+			lowerBounds[point] = secondDistance;
+		}
+		return nearest;
+	}
+
+	/**
+	 * Gets the Euclidean distance between a point and a centroid.
+	 *
+	 * @param point the point index
+	 * @param cluster the cluster index
+	 * @return the distance
+	 */
+	protected double distance(int point, int cluster) {
+		int d = dimensions;
+		int base = point * d;
+		int cbase = cluster * d;
+		double sum = 0;
+		for (int j = 0; j < d; j++) {
+			double diff = centroids[cbase + j] - points[base + j];
+			sum += diff * diff;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * Computes, for every centroid, half the distance to its closest other centroid.
+	 * A point closer than that to its centroid cannot be closer to any other one.
+	 */
+	protected void updateHalfSeparations() {
+		int d = dimensions;
+		int k = numberOfClusters;
+		for (int c = 0; c < k; c++) {
+			halfSeparations[c] = Double.MAX_VALUE;
+		}
+		for (int a = 0; a < k; a++) {
+			for (int b = a + 1; b < k; b++) {
+				double sum = 0;
+				for (int j = 0; j < d; j++) {
+					double diff = centroids[a * d + j] - centroids[b * d + j];
+					sum += diff * diff;
+				}
+				double half = Math.sqrt(sum) / 2;
+				if (half < halfSeparations[a]) {
+					halfSeparations[a] = half;
+				}
+				if (half < halfSeparations[b]) {
+					halfSeparations[b] = half;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves every centroid to the mean of the points assigned to it by the last {@link #assign()}.
+	 * The partial sums of the chunks are reduced in chunk order, so the result does not depend on
+	 * whether the assignment ran in parallel. The previous centroids are kept for the convergence
+	 * check.
+	 */
+	public void update() {
+		int d = dimensions;
+		int k = numberOfClusters;
+		int chunks = getNumberOfChunks();
+		System.arraycopy(centroids, 0, previousCentroids, 0, k * d);
+		for (int i = 0; i < k * d; i++) {
+			sums[i] = 0;
+		}
+		for (int c = 0; c < k; c++) {
+			counts[c] = 0;
+		}
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int sumBase = chunk * k * d;
+			int countBase = chunk * k;
+			for (int c = 0; c < k; c++) {
+				counts[c] += chunkCounts[countBase + c];
+			}
+			for (int i = 0; i < k * d; i++) {
+				sums[i] += chunkSums[sumBase + i];
+			}
+		}
+		double largestShift = 0;
+		for (int c = 0; c < k; c++) {
+			int cbase = c * d;
+			double sum = 0;
+			for (int j = 0; j < d; j++) {
+				centroids[cbase + j] = sums[cbase + j] / counts[c];
+				double diff = centroids[cbase + j] - previousCentroids[cbase + j];
+				sum += diff * diff;
+			}
+			// an emptied cluster (NaN) attracts no point anymore, so it cannot loosen any bound
+			double shift = Math.sqrt(sum);
+			if (Double.isNaN(shift)) {
+				shift = 0;
+			}
+			if (shift > largestShift) {
+				largestShift = shift;
+			}
+			centroidShifts[c] += shift;
+		}
+		lastMaxShift = largestShift;
+		maxShift = 0;
+		secondMaxShift = 0;
+		maxShiftCluster = -1;
+		for (int c = 0; c < k; c++) {
+			if (centroidShifts[c] > maxShift) {
+				secondMaxShift = maxShift;
+				maxShift = centroidShifts[c];
+				maxShiftCluster = c;
+			} else if (centroidShifts[c] > secondMaxShift) {
+				secondMaxShift = centroidShifts[c];
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of chunks the loaded points are split into.
+	 *
+	 * @return the number of chunks
+	 */
+	protected int getNumberOfChunks() {
+		return (numberOfPoints + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+	/**
+	 * Checks whether the assignment step should run on the fork/join pool.
+	 *
+	 * @param chunks the number of chunks
+	 * @return true, if the assignment runs in parallel
+	 */
+	protected boolean isParallel(int chunks) {
+		return getPool() != null && chunks > 1 && numberOfPoints >= getParallelThreshold();
+	}
+
+	/**
+	 * A fork/join task assigning a range of chunks, split in halves down to single chunks.
+	 */
+	private class AssignTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The first chunk of the range. */
+		private final int from;
+
+		/** The chunk after the last one of the range. */
+		private final int to;
+
+		/**
+		 * Instantiates a new AssignTask.
+		 *
+		 * @param from the first chunk of the range
+		 * @param to the chunk after the last one of the range
+		 */
+		AssignTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				assignChunk(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new AssignTask(from, middle), new AssignTask(middle, to));
+		}
+
+	}
+
+	/**
+	 * Checks whether the last update left every centroid in place, or moved none of them by more
+	 * than the tolerance if one is set. Two NaN coordinates (an empty cluster) are considered
+	 * equal, as such a cluster cannot attract points anymore.
+	 *
+	 * @return true, if the centroids did not move
+	 */
+	public boolean isConverged() {
+		if (getTolerance() > 0) {
+			return lastMaxShift <= getTolerance();
+		}
+		int size = numberOfClusters * dimensions;
+		for (int i = 0; i < size; i++) {
+			double current = centroids[i];
+			double previous = previousCentroids[i];
+			if (current != previous && !(current != current && previous != previous)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the within-cluster sum of squared distances of the current assignments, each point
+	 * counted once per VM sharing it.
+	 *
+	 * @return the inertia
+	 */
+	public double getInertia() {
+		double inertia = 0;
+		for (int i = 0; i < numberOfPoints; i++) {
+			double distance = distance(i, assignments[i]);
+			inertia += weights[i] * distance * distance;
+		}
+		return inertia;
+	}
+
+	/**
+	 * Gets the mean silhouette of the current assignments, computed on an evenly strided sample
+	 * of at most sampleSize points and weighted by the number of VMs per point. The cost is
+	 * quadratic in the sample size, not in the number of points.
+	 *
+	 * @param sampleSize the maximum number of points in the sample
+	 * @return the silhouette, from -1 (wrong clusters) to 1 (dense, well separated clusters)
+	 */
+	public double getSampledSilhouette(int sampleSize) {
+		int n = numberOfPoints;
+		int k = numberOfClusters;
+		int stride = Math.max(1, (n + sampleSize - 1) / sampleSize);
+		double[] clusterDistances = new double[k];
+		double[] clusterWeights = new double[k];
+		double total = 0;
+		double totalWeight = 0;
+		for (int i = 0; i < n; i += stride) {
+			for (int c = 0; c < k; c++) {
+				clusterDistances[c] = 0;
+				clusterWeights[c] = 0;
+			}
+			for (int j = 0; j < n; j += stride) {
+				int c = assignments[j];
+				clusterDistances[c] += weights[j] * pointDistance(i, j);
+				clusterWeights[c] += weights[j];
+			}
+			int own = assignments[i];
+			double silhouette = 0;
+			if (clusterWeights[own] > 1) {
+				// the point itself is at distance 0, and one of its VMs is not its own neighbor
+				double a = clusterDistances[own] / (clusterWeights[own] - 1);
+				double b = Double.MAX_VALUE;
+				for (int c = 0; c < k; c++) {
+					if (c != own && clusterWeights[c] > 0) {
+						b = Math.min(b, clusterDistances[c] / clusterWeights[c]);
+					}
+				}
+				double scale = Math.max(a, b);
+				if (b != Double.MAX_VALUE && scale > 0) {
+					silhouette = (b - a) / scale;
+				}
+			}
+			total += weights[i] * silhouette;
+			totalWeight += weights[i];
+		}
+		return totalWeight == 0 ? 0 : total / totalWeight;
+	}
+
+	/**
+	 * Gets the Euclidean distance between two points.
+	 *
+	 * @param a the first point index
+	 * @param b the second point index
+	 * @return the distance
+	 */
+	public double pointDistance(int a, int b) {
+		int d = dimensions;
+		double sum = 0;
+		for (int j = 0; j < d; j++) {
+			double diff = points[a * d + j] - points[b * d + j];
+			sum += diff * diff;
+		}
+		return Math.sqrt(sum);
+	}
+
+	/**
+	 * Gets a hash of the loaded points and their weights, identifying the shape of the fleet
+	 * regardless of which VMs it is made of and of their order.
+	 *
+	 * @return the signature of the loaded points
+	 */
+	public long getPointsSignature() {
+		int d = dimensions;
+		long signature = numberOfVms * 31L + d;
+		for (int i = 0; i < numberOfPoints; i++) {
+			long hash = 0;
+			for (int j = 0; j < d; j++) {
+				hash = hash * 31 + Double.doubleToLongBits(points[i * d + j]);
+			}
+			hash *= 0x9E3779B97F4A7C15L;
+			signature += (hash ^ (hash >>> 29)) * weights[i];
+		}
+		return signature;
+	}
+
+	/**
+	 * Groups the given VMs by the current assignments. The VMs must be the ones
+	 * the points were loaded from, in the same order.
+	 *
+	 * @param vms the VMs
+	 * @return one list of VMs per cluster, in VM order
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Vm> List<List<T>> getClusters(List<? extends Vm> vms) {
+		int k = numberOfClusters;
+		List<List<T>> clusters = new ArrayList<List<T>>(k);
+		for (int c = 0; c < k; c++) {
+			clusters.add(new ArrayList<T>());
+		}
+		int i = 0;
+		for (Vm vm : vms) {
+			clusters.get(assignments[vmPoints[i++]]).add((T) vm);
+		}
+		return clusters;
+	}
+
+	/**
+	 * Gets a copy of the current centroids.
+	 *
+	 * @return the centroids, one row per cluster
+	 */
+	public double[][] getCentroids() {
+		double[][] result = new double[numberOfClusters][dimensions];
+		for (int c = 0; c < numberOfClusters; c++) {
+			System.arraycopy(centroids, c * dimensions, result[c], 0, dimensions);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the centroid (mean MIPS and RAM) of each given cluster of VMs.
+	 * An empty cluster gets a NaN centroid.
+	 *
+	 * @param clusters the clusters
+	 * @return the centroids, one row per cluster
+	 */
+	public static double[][] computeCentroids(List<? extends List<? extends Vm>> clusters) {
+		double[][] result = new double[clusters.size()][DEFAULT_DIMENSIONS];
+		int c = 0;
+		for (List<? extends Vm> cluster : clusters) {
+			double mips = 0;
+			double ram = 0;
+			for (Vm vm : cluster) {
+				mips += vm.getMips();
+				ram += vm.getRam();
+			}
+			result[c][0] = mips / cluster.size();
+			result[c][1] = ram / cluster.size();
+			c++;
+		}
+		return result;
+	}
+
+	/**
+	 * Makes sure the point buffers can hold n points of d features. The assignments of new slots
+	 * are reset to -1 so that the first assignment counts every point as changed.
+	 *
+	 * @param n the number of points
+	 * @param d the number of dimensions
+	 */
+	protected void ensurePointCapacity(int n, int d) {
+		if (points.length < n * d) {
+			points = new double[n * d];
+		}
+		if (assignments.length < n) {
+			assignments = new int[n];
+		}
+		Arrays.fill(assignments, 0, n, -1);
+	}
+
+	/**
+	 * Resets the assignments of the loaded points to -1, so that the first assignment of a run
+	 * counts every point as changed instead of comparing with the labels of another run.
+	 */
+	private void resetAssignments() {
+		Arrays.fill(assignments, 0, numberOfPoints, -1);
+	}
+
+	/**
+	 * Makes sure the centroid buffers can hold k clusters.
+	 *
+	 * @param k the number of clusters
+	 */
+	protected void ensureClusterCapacity(int k) {
+		int size = k * dimensions;
+		if (centroids.length < size) {
+			centroids = new double[size];
+			previousCentroids = new double[size];
+			sums = new double[size];
+		}
+		if (counts.length < k) {
+			counts = new int[k];
+			halfSeparations = new double[k];
+			centroidShifts = new double[k];
+		}
+	}
+
+	/**
+	 * Makes sure the per-chunk buffers can hold the given number of chunks
+	 * for the current number of clusters.
+	 *
+	 * @param chunks the number of chunks
+	 */
+	protected void ensureChunkCapacity(int chunks) {
+		int size = chunks * numberOfClusters * dimensions;
+		if (chunkSums.length < size) {
+			chunkSums = new double[size];
+		}
+		if (chunkCounts.length < chunks * numberOfClusters) {
+			chunkCounts = new int[chunks * numberOfClusters];
+		}
+		if (chunkChanged.length < chunks) {
+			chunkChanged = new int[chunks];
+			chunkDistances = new int[chunks];
+		}
+	}
+
+	/**
+	 * Makes sure the bound buffers can hold the loaded points.
+	 */
+	protected void ensureBoundCapacity() {
+		if (upperBounds.length < numberOfPoints) {
+			upperBounds = new double[numberOfPoints];
+			lowerBounds = new double[numberOfPoints];
+		}
+	}
+
+	/**
+	 * Gets a scratch buffer of at least n values for the seeding distances.
+	 *
+	 * @param n the number of points
+	 * @return the buffer
+	 */
+	private double[] ensureDistanceCapacity(int n) {
+		if (distanceBuffer.length < n) {
+			distanceBuffer = new double[n];
+		}
+		return distanceBuffer;
+	}
+
+	/**
+	 * Gets the number of loaded points, that is the number of distinct feature vectors
+	 * when deduplicating.
+	 *
+	 * @return the number of points
+	 */
+	public int getNumberOfPoints() {
+		return numberOfPoints;
+	}
+
+	/**
+	 * Gets the number of VMs the points were loaded from.
+	 *
+	 * @return the number of VMs
+	 */
+	public int getNumberOfVms() {
+		return numberOfVms;
+	}
+
+	/**
+	 * Checks whether identical feature vectors are loaded once, as a weighted point.
+	 *
+	 * @return true, if the engine deduplicates points
+	 */
+	public boolean isDeduplicating() {
+		return deduplicating;
+	}
+
+	/**
+	 * Turns the deduplication of identical feature vectors on or off. It applies from the
+	 * next time points are loaded.
+	 *
+	 * @param deduplicating true to load identical feature vectors once
+	 */
+	public void setDeduplicating(boolean deduplicating) {
+		this.deduplicating = deduplicating;
+	}
+
+	/**
+	 * Gets the number of clusters.
+	 *
+	 * @return the number of clusters
+	 */
+	public int getNumberOfClusters() {
+		return numberOfClusters;
+	}
+
+	/**
+	 * Gets the number of dimensions of a point.
+	 *
+	 * @return the number of dimensions
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * Gets the fork/join pool of the parallel assignment step.
+	 *
+	 * @return the pool, or null if the assignment runs sequentially
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the fork/join pool of the parallel assignment step.
+	 *
+	 * @param pool the pool, or null to run sequentially
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the minimum number of points for the assignment step to run in parallel.
+	 *
+	 * @return the parallel threshold
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the minimum number of points for the assignment step to run in parallel.
+	 *
+	 * @param parallelThreshold the new parallel threshold
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Checks whether the assignment step prunes distance computations with triangle-inequality
+	 * bounds.
+	 *
+	 * @return true, if the accelerated mode is on
+	 */
+	public boolean isAccelerated() {
+		return accelerated;
+	}
+
+	/**
+	 * Turns the accelerated mode on or off. In accelerated mode every point keeps an upper bound
+	 * on the distance to its centroid and a lower bound on the distance to the second closest one
+	 * (Hamerly's algorithm); after the first iteration, a point whose bounds are not loosened past
+	 * each other by the centroid shifts keeps its cluster without any distance computation.
+	 * Assignments are the same as in the plain mode, up to floating-point rounding of the bounds.
+	 *
+	 * @param accelerated true to turn the accelerated mode on
+	 */
+	public void setAccelerated(boolean accelerated) {
+		this.accelerated = accelerated;
+		boundsValid = false;
+	}
+
+	/**
+	 * Gets the maximum centroid shift for a run to be considered converged.
+	 *
+	 * @return the tolerance; 0 if the centroids must not move at all
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Sets the maximum centroid shift for a run to be considered converged.
+	 *
+	 * @param tolerance the new tolerance; 0 if the centroids must not move at all
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Gets the number of changed assignments at or below which a run stops.
+	 *
+	 * @return the assignment change threshold
+	 */
+	public int getAssignmentChangeThreshold() {
+		return assignmentChangeThreshold;
+	}
+
+	/**
+	 * Sets the number of changed assignments at or below which a run stops. With 0, a run
+	 * stops as soon as an iteration leaves every point in its cluster.
+	 *
+	 * @param assignmentChangeThreshold the new assignment change threshold
+	 */
+	public void setAssignmentChangeThreshold(int assignmentChangeThreshold) {
+		this.assignmentChangeThreshold = assignmentChangeThreshold;
+	}
+
+	/**
+	 * Gets the listener of the seeds and iterations.
+	 *
+	 * @return the listener, or null if none is registered
+	 */
+	public ClusteringListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Sets the listener of the seeds and iterations. Seeding with {@link #seed(int, double[][])}
+	 * and every iteration of {@link #run(int)} are reported.
+	 *
+	 * @param listener the listener, or null to build no event
+	 */
+	public void setListener(ClusteringListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Gets the number of point-to-centroid distances computed by the last run.
+	 *
+	 * @return the number of distance computations
+	 */
+	public long getDistanceComputations() {
+		return distanceComputations;
+	}
+
+	/**
+	 * Gets the number of iterations performed by the last run.
+	 *
+	 * @return the number of iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Gets the cluster index of a point after the last assignment.
+	 *
+	 * @param point the point index
+	 * @return the cluster index
+	 */
+	public int getAssignment(int point) {
+		return assignments[point];
+	}
+
+	/**
+	 * Gets the number of VMs sharing a point.
+	 *
+	 * @param point the point index
+	 * @return the weight of the point
+	 */
+	public int getWeight(int point) {
+		return weights[point];
+	}
+
+	/**
+	 * Gets a feature of a loaded point.
+	 *
+	 * @param point the point index
+	 * @param feature the feature index
+	 * @return the feature value
+	 */
+	public double getCoordinate(int point, int feature) {
+		return points[point * dimensions + feature];
+	}
+
+	/**
+	 * Gets the point a VM was loaded as.
+	 *
+	 * @param vm the VM index, in the order the points were loaded from
+	 * @return the point index
+	 */
+	public int getVmPoint(int vm) {
+		return vmPoints[vm];
+	}
+
+	/**
+	 * Gets the cluster index of a VM after the last assignment.
+	 *
+	 * @param vm the VM index, in the order the points were loaded from
+	 * @return the cluster index
+	 */
+	public int getVmAssignment(int vm) {
+		return assignments[vmPoints[vm]];
+	}
+
+	/**
+	 * Gets the number of VMs in a cluster after the last update.
+	 *
+	 * @param cluster the cluster index
+	 * @return the number of VMs
+	 */
+	public int getClusterSize(int cluster) {
+		return counts[cluster];
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * The k-means algorithm of the original clustering scheme: farthest-from-mean seeding followed by
+ * Lloyd iterations, both run by the {@link KMeansClusterer} holding the points.
+ */
+public class KMeansClusteringAlgorithm implements VmClusteringAlgorithm {
+
+	/** The name of the algorithm. */
+	public static final String NAME = "kmeans";
+
+	/** The maximum number of iterations. */
+	private final int maxIterations;
+
+	/** The centroids of the last run. */
+	private double[][] centroids;
+
+	/**
+	 * Instantiates a new KMeansClusteringAlgorithm with the default maximum number of iterations.
+	 */
+	public KMeansClusteringAlgorithm() {
+		this(KMeansClusterer.DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Instantiates a new KMeansClusteringAlgorithm.
+	 *
+	 * @param maxIterations the maximum number of iterations
+	 */
+	public KMeansClusteringAlgorithm(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isCentroidBased() {
+		return true;
+	}
+
+	@Override
+	public <T extends Vm> List<List<T>> cluster(KMeansClusterer points, List<? extends Vm> vms, int k, double[][] seeds) {
+		points.seed(k, seeds);
+		points.run(maxIterations);
+		centroids = points.getCentroids();
+		return points.getClusters(vms);
+	}
+
+	@Override
+	public double[][] getCentroids() {
+		return centroids;
+	}
+
+}
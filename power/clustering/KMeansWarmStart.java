@@ -0,0 +1,193 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+/**
+ * Keeps the number of clusters and the final centroids of a k-means run, so that the
+ * run of the next scheduling interval can start from them instead of seeding from scratch.
+ *
+ * <br/>The state is anchored to the shape of the fleet at the last full seeding: the number
+ * of VMs to cluster, their total MIPS and the total available MIPS of the hosts. As long as
+ * none of these drifts by more than {@link #getMaxDrift()} (relative to the anchor), the saved
+ * k and centroids are reused. Past that, the caller re-seeds and re-anchors the state.
+ */
+public class KMeansWarmStart {
+
+	/** The default maximum relative drift of the fleet before a full re-seeding. */
+	public static final double DEFAULT_MAX_DRIFT = 0.1;
+
+	/** The maximum relative drift of the fleet before a full re-seeding. */
+	private double maxDrift;
+
+	/** The centroids of the last run, or null if there is nothing to reuse. */
+	private double[][] centroids;
+
+	/** The number of VMs at the last full seeding. */
+	private int numberOfPoints;
+
+	/** The total MIPS of the VMs at the last full seeding. */
+	private double totalMips;
+
+	/** The total available MIPS of the hosts at the last full seeding. */
+	private double capacity;
+
+	/** The number of runs that reused the saved centroids. */
+	private int warmStarts;
+
+	/** The number of runs that required a full seeding. */
+	private int coldStarts;
+
+	/**
+	 * Instantiates a new KMeansWarmStart with the default drift.
+	 */
+	public KMeansWarmStart() {
+		this(DEFAULT_MAX_DRIFT);
+	}
+
+	/**
+	 * Instantiates a new KMeansWarmStart.
+	 *
+	 * @param maxDrift the maximum relative drift of the fleet before a full re-seeding
+	 */
+	public KMeansWarmStart(double maxDrift) {
+		setMaxDrift(maxDrift);
+	}
+
+	/**
+	 * Checks whether the saved centroids can seed a run on the given fleet.
+	 *
+	 * @param numberOfPoints the number of VMs to cluster
+	 * @param totalMips the total MIPS of the VMs to cluster
+	 * @param capacity the total available MIPS of the hosts
+	 * @return true, if the saved k and centroids can be reused
+	 */
+	public boolean isReusable(int numberOfPoints, double totalMips, double capacity) {
+		boolean reusable = centroids != null
+				&& relativeChange(numberOfPoints, this.numberOfPoints) <= getMaxDrift()
+				&& relativeChange(totalMips, this.totalMips) <= getMaxDrift()
+				&& relativeChange(capacity, this.capacity) <= getMaxDrift();
+		if (reusable) {
+			warmStarts++;
+		} else {
+			coldStarts++;
+		}
+		return reusable;
+	}
+
+	/**
+	 * Saves the centroids of a run that started from a full seeding, and anchors
+	 * the state to the current fleet.
+	 *
+	 * @param centroids the final centroids
+	 * @param numberOfPoints the number of VMs clustered
+	 * @param totalMips the total MIPS of the VMs clustered
+	 * @param capacity the total available MIPS of the hosts
+	 */
+	public void setSeed(double[][] centroids, int numberOfPoints, double totalMips, double capacity) {
+		this.numberOfPoints = numberOfPoints;
+		this.totalMips = totalMips;
+		this.capacity = capacity;
+		setCentroids(centroids);
+	}
+
+	/**
+	 * Saves the centroids of a warm-started run. The anchor is left untouched, so that
+	 * a slow drift still ends up in a full re-seeding. Centroids of empty clusters (NaN)
+	 * cannot attract VMs anymore, so a run that left any of them drops the state.
+	 *
+	 * @param centroids the final centroids
+	 */
+	public void setCentroids(double[][] centroids) {
+		for (double[] centroid : centroids) {
+			for (double value : centroid) {
+				if (Double.isNaN(value)) {
+					reset();
+					return;
+				}
+			}
+		}
+		this.centroids = centroids;
+	}
+
+	/**
+	 * Drops the saved state, so that the next run seeds from scratch.
+	 */
+	public void reset() {
+		centroids = null;
+	}
+
+	/**
+	 * Gets the saved centroids.
+	 *
+	 * @return the centroids, or null if there is nothing to reuse
+	 */
+	public double[][] getCentroids() {
+		return centroids;
+	}
+
+	/**
+	 * Gets the saved number of clusters.
+	 *
+	 * @return the number of clusters, or 0 if there is nothing to reuse
+	 */
+	public int getNumberOfClusters() {
+		return centroids == null ? 0 : centroids.length;
+	}
+
+	/**
+	 * Gets the relative change of a value with respect to a reference.
+	 *
+	 * @param value the value
+	 * @param reference the reference
+	 * @return the relative change
+	 */
+	protected static double relativeChange(double value, double reference) {
+		if (reference == 0) {
+			return value == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		return Math.abs(value - reference) / Math.abs(reference);
+	}
+
+	/**
+	 * Gets the maximum relative drift.
+	 *
+	 * @return the maximum relative drift
+	 */
+	public double getMaxDrift() {
+		return maxDrift;
+	}
+
+	/**
+	 * Sets the maximum relative drift. Zero only reuses the state on an unchanged fleet.
+	 *
+	 * @param maxDrift the new maximum relative drift
+	 */
+	public void setMaxDrift(double maxDrift) {
+		this.maxDrift = maxDrift;
+	}
+
+	/**
+	 * Gets the number of runs that reused the saved centroids.
+	 *
+	 * @return the number of warm starts
+	 */
+	public int getWarmStarts() {
+		return warmStarts;
+	}
+
+	/**
+	 * Gets the number of runs that required a full seeding.
+	 *
+	 * @return the number of cold starts
+	 */
+	public int getColdStarts() {
+		return coldStarts;
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A k-medoids algorithm (alternating, Voronoi iteration): every cluster is represented by one of
+ * its points, the one with the lowest total distance to the other VMs of the cluster. Medoids are
+ * actual VM shapes, which makes the clusters less sensitive to a few outlying VMs than k-means.
+ *
+ * <br/>The initial medoids are the points nearest to the k-means seeds. Every iteration assigns
+ * the points to their nearest medoid, then moves every medoid within its cluster; the run stops
+ * when no medoid moves. Finding a medoid is quadratic in the number of points of its cluster,
+ * which stays small when identical VMs are deduplicated.
+ */
+public class KMedoidsClusteringAlgorithm implements VmClusteringAlgorithm {
+
+	/** The name of the algorithm. */
+	public static final String NAME = "kmedoids";
+
+	/** The maximum number of iterations. */
+	private final int maxIterations;
+
+	/** The coordinates of the medoids of the last run. */
+	private double[][] centroids;
+
+	/**
+	 * Instantiates a new KMedoidsClusteringAlgorithm with the default maximum number of iterations.
+	 */
+	public KMedoidsClusteringAlgorithm() {
+		this(KMeansClusterer.DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Instantiates a new KMedoidsClusteringAlgorithm.
+	 *
+	 * @param maxIterations the maximum number of iterations
+	 */
+	public KMedoidsClusteringAlgorithm(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isCentroidBased() {
+		return true;
+	}
+
+	@Override
+	public <T extends Vm> List<List<T>> cluster(KMeansClusterer points, List<? extends Vm> vms, int k, double[][] seeds) {
+		points.seed(k, seeds);
+		int[] medoids = getNearestPoints(points, points.getCentroids());
+		ClusteringListener listener = points.getListener();
+		for (int iteration = 0; iteration < maxIterations; iteration++) {
+			points.setCentroids(getCoordinates(points, medoids));
+			int changed = points.assign();
+			if (listener != null) {
+				listener.iterationCompleted(iteration + 1, changed, getCoordinates(points, medoids));
+			}
+			if (!updateMedoids(points, medoids)) {
+				break;
+			}
+			if (iteration == maxIterations - 1) {
+				points.setCentroids(getCoordinates(points, medoids));
+				points.assign();
+			}
+		}
+		centroids = getCoordinates(points, medoids);
+		return points.getClusters(vms);
+	}
+
+	/**
+	 * Gets, for every seed, the nearest point not taken by a previous seed.
+	 *
+	 * @param points the engine holding the points
+	 * @param seeds the seeds
+	 * @return the initial medoids
+	 */
+	protected int[] getNearestPoints(KMeansClusterer points, double[][] seeds) {
+		int n = points.getNumberOfPoints();
+		int d = points.getDimensions();
+		int k = Math.min(seeds.length, n);
+		int[] medoids = new int[k];
+		boolean[] taken = new boolean[n];
+		for (int c = 0; c < k; c++) {
+			double minDistance = Double.MAX_VALUE;
+			int nearest = -1;
+			for (int i = 0; i < n; i++) {
+				if (taken[i]) {
+					continue;
+				}
+				double sum = 0;
+				for (int j = 0; j < d; j++) {
+					double diff = seeds[c][j] - points.getCoordinate(i, j);
+					sum += diff * diff;
+				}
+				if (nearest == -1 || sum < minDistance) {
+					minDistance = sum;
+					nearest = i;
+				}
+			}
+			medoids[c] = nearest;
+			taken[nearest] = true;
+		}
+		return medoids;
+	}
+
+	/**
+	 * Moves every medoid to the point of its cluster with the lowest total distance to the
+	 * VMs of the cluster.
+	 *
+	 * @param points the engine holding the points and their assignments
+	 * @param medoids the medoids, updated in place
+	 * @return true, if any medoid moved
+	 */
+	protected boolean updateMedoids(KMeansClusterer points, int[] medoids) {
+		int n = points.getNumberOfPoints();
+		int k = medoids.length;
+		int[] sizes = new int[k];
+		for (int i = 0; i < n; i++) {
+			sizes[points.getAssignment(i)]++;
+		}
+		int[][] members = new int[k][];
+		for (int c = 0; c < k; c++) {
+			members[c] = new int[sizes[c]];
+			sizes[c] = 0;
+		}
+		for (int i = 0; i < n; i++) {
+			int c = points.getAssignment(i);
+			members[c][sizes[c]++] = i;
+		}
+		boolean moved = false;
+		for (int c = 0; c < k; c++) {
+			int best = medoids[c];
+			double bestCost = Double.MAX_VALUE;
+			for (int candidate : members[c]) {
+				double cost = 0;
+				for (int other : members[c]) {
+					cost += points.getWeight(other) * points.pointDistance(candidate, other);
+					if (cost >= bestCost) {
+						break;
+					}
+				}
+				if (cost < bestCost) {
+					bestCost = cost;
+					best = candidate;
+				}
+			}
+			if (best != medoids[c]) {
+				medoids[c] = best;
+				moved = true;
+			}
+		}
+		return moved;
+	}
+
+	/**
+	 * Gets the coordinates of the given points.
+	 *
+	 * @param points the engine holding the points
+	 * @param indexes the point indexes
+	 * @return the coordinates, one row per point
+	 */
+	private static double[][] getCoordinates(KMeansClusterer points, int[] indexes) {
+		int d = points.getDimensions();
+		double[][] coordinates = new double[indexes.length][d];
+		for (int c = 0; c < indexes.length; c++) {
+			for (int j = 0; j < d; j++) {
+				coordinates[c][j] = points.getCoordinate(indexes[c], j);
+			}
+		}
+		return coordinates;
+	}
+
+	@Override
+	public double[][] getCentroids() {
+		return centroids;
+	}
+
+}
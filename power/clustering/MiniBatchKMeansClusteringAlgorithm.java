@@ -0,0 +1,155 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * A mini-batch k-means algorithm (Sculley, 2010) for very large VM sets: every iteration draws a
+ * small batch of VMs, assigns them to their nearest centroid and moves each centroid towards its
+ * batch VMs with a per-centroid learning rate. The iterations cost O(batch * k) whatever the number
+ * of VMs; a single full assignment then builds the clusters.
+ *
+ * <br/>Batches are drawn with a fixed-seed random generator, so runs are reproducible.
+ */
+public class MiniBatchKMeansClusteringAlgorithm implements VmClusteringAlgorithm {
+
+	/** The name of the algorithm. */
+	public static final String NAME = "minibatch";
+
+	/** The default number of VMs per batch. */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/** The default number of batches. */
+	public static final int DEFAULT_ITERATIONS = 30;
+
+	/** The seed of the batch generator. */
+	private static final long SEED = 1;
+
+	/** The number of VMs per batch. */
+	private final int batchSize;
+
+	/** The number of batches. */
+	private final int iterations;
+
+	/** The centroids of the last run. */
+	private double[][] centroids;
+
+	/**
+	 * Instantiates a new MiniBatchKMeansClusteringAlgorithm with the default batch size and
+	 * number of batches.
+	 */
+	public MiniBatchKMeansClusteringAlgorithm() {
+		this(DEFAULT_BATCH_SIZE, DEFAULT_ITERATIONS);
+	}
+
+	/**
+	 * Instantiates a new MiniBatchKMeansClusteringAlgorithm.
+	 *
+	 * @param batchSize the number of VMs per batch
+	 * @param iterations the number of batches
+	 */
+	public MiniBatchKMeansClusteringAlgorithm(int batchSize, int iterations) {
+		this.batchSize = batchSize;
+		this.iterations = iterations;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isCentroidBased() {
+		return true;
+	}
+
+	@Override
+	public <T extends Vm> List<List<T>> cluster(KMeansClusterer points, List<? extends Vm> vms, int k, double[][] seeds) {
+		points.seed(k, seeds);
+		double[][] result = points.getCentroids();
+		int d = points.getDimensions();
+		int numberOfVms = points.getNumberOfVms();
+		long[] counts = new long[result.length];
+		int[] batch = new int[batchSize];
+		int[] nearest = new int[batchSize];
+		Random random = new Random(SEED);
+		ClusteringListener listener = points.getListener();
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			for (int b = 0; b < batchSize; b++) {
+				batch[b] = points.getVmPoint(random.nextInt(numberOfVms));
+				nearest[b] = getNearestCentroid(points, batch[b], result);
+			}
+			for (int b = 0; b < batchSize; b++) {
+				int c = nearest[b];
+				counts[c]++;
+				double rate = 1.0 / counts[c];
+				for (int j = 0; j < d; j++) {
+					result[c][j] += rate * (points.getCoordinate(batch[b], j) - result[c][j]);
+				}
+			}
+			if (listener != null) {
+				listener.iterationCompleted(iteration + 1, -1, copy(result));
+			}
+		}
+		points.setCentroids(result);
+		points.assign();
+		centroids = result;
+		return points.getClusters(vms);
+	}
+
+	/**
+	 * Gets the nearest centroid of a point, the lowest cluster index winning ties.
+	 *
+	 * @param points the engine holding the points
+	 * @param point the point index
+	 * @param centroids the centroids
+	 * @return the nearest cluster index
+	 */
+	private static int getNearestCentroid(KMeansClusterer points, int point, double[][] centroids) {
+		int d = points.getDimensions();
+		double minDistance = Double.MAX_VALUE;
+		int nearest = 0;
+		for (int c = 0; c < centroids.length; c++) {
+			double sum = 0;
+			for (int j = 0; j < d; j++) {
+				double diff = centroids[c][j] - points.getCoordinate(point, j);
+				sum += diff * diff;
+			}
+			if (sum < minDistance) {
+				minDistance = sum;
+				nearest = c;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Copies centroids.
+	 *
+	 * @param centroids the centroids
+	 * @return the copy
+	 */
+	private static double[][] copy(double[][] centroids) {
+		double[][] copy = new double[centroids.length][];
+		for (int c = 0; c < centroids.length; c++) {
+			copy[c] = centroids[c].clone();
+		}
+		return copy;
+	}
+
+	@Override
+	public double[][] getCentroids() {
+		return centroids;
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * An algorithm grouping the VMs to migrate into clusters, which the allocation policy then
+ * places cluster by cluster.
+ *
+ * <br/>The VMs are handed over as the points loaded in a {@link KMeansClusterer}, which holds
+ * their (deduplicated, weighted) feature vectors; an algorithm may use the engine for seeding and
+ * assignment, or only read its points. Implementations are looked up by name through
+ * {@link VmClusteringAlgorithms#forName(String)}.
+ */
+public interface VmClusteringAlgorithm {
+
+	/**
+	 * Gets the name the algorithm is selected by.
+	 *
+	 * @return the name
+	 */
+	String getName();
+
+	/**
+	 * Checks whether the algorithm needs the number of clusters and yields centroids. Only such
+	 * algorithms get a selected k and can be warm-started from the centroids of a previous run.
+	 *
+	 * @return true, if the algorithm is centroid based
+	 */
+	boolean isCentroidBased();
+
+	/**
+	 * Clusters the VMs whose points are loaded in the given engine.
+	 *
+	 * @param points the engine holding the points of the VMs
+	 * @param vms the VMs, in the order their points were loaded
+	 * @param k the number of clusters; ignored if the algorithm is not centroid based
+	 * @param seeds the initial centroids, or null to seed from the points
+	 * @return the clusters of VMs; every VM belongs to exactly one cluster
+	 */
+	<T extends Vm> List<List<T>> cluster(KMeansClusterer points, List<? extends Vm> vms, int k, double[][] seeds);
+
+	/**
+	 * Gets the centroids of the last run.
+	 *
+	 * @return the centroids, one row per cluster, or null if the algorithm is not centroid based
+	 */
+	double[][] getCentroids();
+
+}
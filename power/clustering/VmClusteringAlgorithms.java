@@ -0,0 +1,43 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+/**
+ * The clustering algorithms shipped with the power package, looked up by name.
+ */
+public final class VmClusteringAlgorithms {
+
+	/**
+	 * Not instantiable.
+	 */
+	private VmClusteringAlgorithms() {
+	}
+
+	/**
+	 * Creates the clustering algorithm of the given name, with its default settings:
+	 * <tt>kmeans</tt>, <tt>kmedoids</tt>, <tt>minibatch</tt> or <tt>dbscan</tt>.
+	 *
+	 * @param name the name of the algorithm
+	 * @return a new instance of the algorithm
+	 * @throws IllegalArgumentException if no algorithm has this name
+	 */
+	public static VmClusteringAlgorithm forName(String name) {
+		if (name.equals(KMeansClusteringAlgorithm.NAME)) {
+			return new KMeansClusteringAlgorithm();
+		} else if (name.equals(KMedoidsClusteringAlgorithm.NAME)) {
+			return new KMedoidsClusteringAlgorithm();
+		} else if (name.equals(MiniBatchKMeansClusteringAlgorithm.NAME)) {
+			return new MiniBatchKMeansClusteringAlgorithm();
+		} else if (name.equals(DbscanClusteringAlgorithm.NAME)) {
+			return new DbscanClusteringAlgorithm();
+		}
+		throw new IllegalArgumentException("Unknown clustering algorithm: " + name);
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.power.PowerVm;
+
+/**
+ * A feature of a VM that can be used as a clustering dimension. The nominal features are read
+ * from the VM as is; the utilization features are derived from the CPU utilization history of a
+ * {@link PowerVm} and are 0 for any other VM.
+ */
+public enum VmFeature {
+
+	/** The MIPS of the VM. */
+	MIPS(false) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm.getMips();
+		}
+	},
+
+	/** The RAM of the VM. */
+	RAM(false) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm.getRam();
+		}
+	},
+
+	/** The bandwidth of the VM. */
+	BW(false) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm.getBw();
+		}
+	},
+
+	/** The mean CPU utilization of the VM, in MIPS. */
+	UTILIZATION_MEAN(true) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm instanceof PowerVm ? ((PowerVm) vm).getUtilizationMean() : 0;
+		}
+	},
+
+	/** The CPU utilization variance of the VM, in MIPS. */
+	UTILIZATION_VARIANCE(true) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm instanceof PowerVm ? ((PowerVm) vm).getUtilizationVariance() : 0;
+		}
+	},
+
+	/** The CPU utilization MAD of the VM, in MIPS. */
+	UTILIZATION_MAD(true) {
+
+		@Override
+		public double getValue(Vm vm) {
+			return vm instanceof PowerVm ? ((PowerVm) vm).getUtilizationMad() : 0;
+		}
+	};
+
+	/** Whether the feature is derived from the CPU utilization history. */
+	private final boolean historyDependent;
+
+	/**
+	 * Instantiates a new VmFeature.
+	 *
+	 * @param historyDependent whether the feature is derived from the CPU utilization history
+	 */
+	private VmFeature(boolean historyDependent) {
+		this.historyDependent = historyDependent;
+	}
+
+	/**
+	 * Gets the value of the feature for a VM.
+	 *
+	 * @param vm the VM
+	 * @return the value
+	 */
+	public abstract double getValue(Vm vm);
+
+	/**
+	 * Checks whether the feature is derived from the CPU utilization history, and can therefore
+	 * be cached until the history changes.
+	 *
+	 * @return true, if the feature depends on the utilization history
+	 */
+	public boolean isHistoryDependent() {
+		return historyDependent;
+	}
+
+}
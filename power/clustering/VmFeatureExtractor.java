@@ -0,0 +1,264 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.clustering;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.power.PowerVm;
+
+/**
+ * Builds the feature matrix clustered by {@link KMeansClusterer}: one row per VM, one column per
+ * configured {@link VmFeature}, each column optionally normalized over the VMs of the matrix so
+ * that no feature drowns the others because of its unit.
+ *
+ * <br/>The utilization features are derived from the whole CPU utilization history of a VM, so
+ * they are cached per VM until {@link PowerVm#getUtilizationHistoryVersion()} changes. The cache
+ * holds its VMs weakly and drops them once they are gone from the simulation.
+ *
+ * <br/>The default extractor uses the raw MIPS and RAM, as the original clustering did.
+ */
+public class VmFeatureExtractor {
+
+	/**
+	 * The normalization applied to every column of the feature matrix.
+	 */
+	public enum Normalization {
+
+		/** The raw values are used. */
+		NONE,
+
+		/** Every column is rescaled to [0, 1]; a constant column becomes 0. */
+		MIN_MAX,
+
+		/** Every column is centered and divided by its standard deviation; a constant column becomes 0. */
+		Z_SCORE
+	}
+
+	/** The features, one per column. */
+	private final VmFeature[] features;
+
+	/** The normalization of the columns. */
+	private final Normalization normalization;
+
+	/** Whether any feature is derived from the utilization history. */
+	private final boolean historyDependent;
+
+	/** The cached history-dependent features per VM. */
+	private final Map<Vm, CachedFeatures> cache = new WeakHashMap<Vm, CachedFeatures>();
+
+	/** The feature matrix, row-major. */
+	private double[] matrix = new double[0];
+
+	/** The number of cached rows reused. */
+	private long cacheHits;
+
+	/** The number of rows computed from the utilization history. */
+	private long cacheMisses;
+
+	/**
+	 * Instantiates a new VmFeatureExtractor using the raw MIPS and RAM.
+	 */
+	public VmFeatureExtractor() {
+		this(Normalization.NONE, VmFeature.MIPS, VmFeature.RAM);
+	}
+
+	/**
+	 * Instantiates a new VmFeatureExtractor.
+	 *
+	 * @param normalization the normalization of the columns
+	 * @param features the features, one per column
+	 */
+	public VmFeatureExtractor(Normalization normalization, VmFeature... features) {
+		if (features.length == 0) {
+			throw new IllegalArgumentException("At least one VM feature is required");
+		}
+		this.features = features.clone();
+		this.normalization = normalization;
+		boolean dependent = false;
+		for (VmFeature feature : features) {
+			dependent |= feature.isHistoryDependent();
+		}
+		historyDependent = dependent;
+	}
+
+	/**
+	 * Builds the feature matrix of the given VMs. The returned buffer is owned by the extractor
+	 * and reused by the next call; only its first <tt>vms.size() * getDimensions()</tt> values
+	 * are meaningful.
+	 *
+	 * @param vms the VMs
+	 * @return the feature matrix, row-major
+	 */
+	public double[] extract(List<? extends Vm> vms) {
+		int n = vms.size();
+		int d = getDimensions();
+		if (matrix.length < n * d) {
+			matrix = new double[n * d];
+		}
+		int offset = 0;
+		for (Vm vm : vms) {
+			double[] cached = historyDependent ? getHistoryFeatures(vm) : null;
+			for (int j = 0; j < d; j++) {
+				VmFeature feature = features[j];
+				matrix[offset + j] = feature.isHistoryDependent() ? cached[j] : feature.getValue(vm);
+			}
+			offset += d;
+		}
+		if (n > 0) {
+			for (int j = 0; j < d; j++) {
+				normalize(j, n);
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Gets the history-dependent features of a VM, from the cache if its utilization history
+	 * did not change since they were computed.
+	 *
+	 * @param vm the VM
+	 * @return the features, indexed like the columns; nominal features are left unset
+	 */
+	protected double[] getHistoryFeatures(Vm vm) {
+		long version = vm instanceof PowerVm ? ((PowerVm) vm).getUtilizationHistoryVersion() : 0;
+		CachedFeatures entry = cache.get(vm);
+		if (entry != null && entry.version == version) {
+			cacheHits++;
+			return entry.values;
+		}
+		if (entry == null) {
+			entry = new CachedFeatures(features.length);
+			cache.put(vm, entry);
+		}
+		for (int j = 0; j < features.length; j++) {
+			if (features[j].isHistoryDependent()) {
+				entry.values[j] = features[j].getValue(vm);
+			}
+		}
+		entry.version = version;
+		cacheMisses++;
+		return entry.values;
+	}
+
+	/**
+	 * Normalizes one column of the first n rows of the matrix.
+	 *
+	 * @param column the column index
+	 * @param n the number of rows
+	 */
+	protected void normalize(int column, int n) {
+		int d = getDimensions();
+		switch (normalization) {
+			case MIN_MAX: {
+				double min = Double.MAX_VALUE;
+				double max = -Double.MAX_VALUE;
+				for (int i = 0; i < n; i++) {
+					double value = matrix[i * d + column];
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+				double range = max - min;
+				for (int i = 0; i < n; i++) {
+					matrix[i * d + column] = range > 0 ? (matrix[i * d + column] - min) / range : 0;
+				}
+				break;
+			}
+			case Z_SCORE: {
+				double sum = 0;
+				for (int i = 0; i < n; i++) {
+					sum += matrix[i * d + column];
+				}
+				double mean = sum / n;
+				double squares = 0;
+				for (int i = 0; i < n; i++) {
+					double diff = matrix[i * d + column] - mean;
+					squares += diff * diff;
+				}
+				double deviation = Math.sqrt(squares / n);
+				for (int i = 0; i < n; i++) {
+					matrix[i * d + column] = deviation > 0 ? (matrix[i * d + column] - mean) / deviation : 0;
+				}
+				break;
+			}
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Gets the number of features per VM.
+	 *
+	 * @return the number of dimensions
+	 */
+	public int getDimensions() {
+		return features.length;
+	}
+
+	/**
+	 * Gets the features, one per column.
+	 *
+	 * @return a copy of the features
+	 */
+	public VmFeature[] getFeatures() {
+		return features.clone();
+	}
+
+	/**
+	 * Gets the normalization of the columns.
+	 *
+	 * @return the normalization
+	 */
+	public Normalization getNormalization() {
+		return normalization;
+	}
+
+	/**
+	 * Gets the number of VMs whose cached utilization features were reused.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Gets the number of VMs whose utilization features were computed from their history.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * The history-dependent features of a VM, with the history version they were computed at.
+	 */
+	private static class CachedFeatures {
+
+		/** The utilization history version the values were computed at. */
+		private long version;
+
+		/** The values, indexed like the columns. */
+		private final double[] values;
+
+		/**
+		 * Instantiates a new CachedFeatures.
+		 *
+		 * @param dimensions the number of features
+		 */
+		CachedFeatures(int dimensions) {
+			values = new double[dimensions];
+		}
+
+	}
+
+}
@@ -14,7 +14,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.math3.analysis.function.Min;
 import org.apache.commons.math3.analysis.function.Power;
@@ -23,6 +25,8 @@ import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.lists.VmList;
 import org.cloudbus.cloudsim.power.PowerVm;
+import org.cloudbus.cloudsim.power.clustering.ClusterDensityIterator;
+import org.cloudbus.cloudsim.power.clustering.KMeansClusterer;
 
 /**
  * PowerVmList is a collection of operations on lists of power-enabled VMs.
@@ -68,81 +72,85 @@ public class PowerVmList extends VmList {
 		});
 	}
 
+	/**
+	 * Assigns every VM to its nearest centroid, according to the Euclidean distance
+	 * between the VM (MIPS, RAM) and the centroids.
+	 * 
+	 * @param vmsToMigrate the VMs to cluster
+	 * @param centroids the centroids, one (MIPS, RAM) row per cluster
+	 * @return one list of VMs per centroid
+	 */
 	public static List<List<PowerVm>> returnCluster(List<? extends Vm> vmsToMigrate, double[][] centroids) {
-		ArrayList<ArrayList<Double>> EuclideanDistance = new ArrayList<ArrayList<Double>>();
-		//System.out.println(centroids);
-		for (int icentroid = 0; icentroid < centroids.length; icentroid++) {
-			ArrayList<Double> EuclideanDistanceTemp = new ArrayList<Double>();
-		for (int i = 0; i < vmsToMigrate.size(); i++) {
-			EuclideanDistanceTemp.add(Math.sqrt(Math.pow((centroids[icentroid][0]-vmsToMigrate.get(i).getMips()), 2)+Math.pow((centroids[icentroid][1]-vmsToMigrate.get(i).getRam()), 2)));		
-		}			
-	EuclideanDistance.add(EuclideanDistanceTemp);  
-		} 
-		for (int i = 0; i < EuclideanDistance.size(); i++) {
-			System.out.println(EuclideanDistance.get(i));
-		}	
-		 int e[] = new int[vmsToMigrate.size()];
- 	 for (int ivm = 0; ivm < vmsToMigrate.size(); ivm++) {
- 		double MinDist = Double.MAX_VALUE;
- 		int indiceMin1 = 0;
- 		
- 		for (int icluster = 0; icluster < centroids.length; icluster++) {	
- 			if(EuclideanDistance.get(icluster).get(ivm) < MinDist)
- 			{
-	        	 MinDist= EuclideanDistance.get(icluster).get(ivm);	
- 			  indiceMin1 = icluster;
- 			}
-		}		 
- 		// System.out.print("-"+MinDist);
- 		//System.out.print(indiceMin1);
- 		e[ivm]=indiceMin1;
+		return returnCluster(vmsToMigrate, centroids, null);
 	}
-  System.out.println();
-  for (int i = 0; i < e.length; i++) {
-	System.err.print(" "+e[i]);
-}
-  List<List<PowerVm>> test = new ArrayList<List<PowerVm>>() ;
-       for (int icentroid = 0; icentroid < centroids.length; icentroid++) {
-    	   ArrayList<PowerVm>  VmCluster = new ArrayList<PowerVm>();
-  for (int imv = 0; imv < vmsToMigrate.size(); imv++) {
-	if (e[imv] == icentroid) {
-		VmCluster.add((PowerVm) vmsToMigrate.get(imv));
-	}
-   }
-  Collections.addAll(test, VmCluster);
-       } 
-  
-  for (int i = 0; i < test.size(); i++) {
-	  System.out.println("taille cluster n :"+i);
-	System.out.println(test.get(i).size());
-}			
-		
-		return test;
+
+	/**
+	 * Assigns every VM to its nearest centroid, running the assignment on a fork/join pool
+	 * when the VM list is large enough. The result is the same as the sequential assignment.
+	 * 
+	 * @param vmsToMigrate the VMs to cluster
+	 * @param centroids the centroids, one (MIPS, RAM) row per cluster
+	 * @param pool the fork/join pool, or null to assign sequentially
+	 * @return one list of VMs per centroid
+	 */
+	public static List<List<PowerVm>> returnCluster(
+			List<? extends Vm> vmsToMigrate,
+			double[][] centroids,
+			ForkJoinPool pool) {
+		KMeansClusterer clusterer = new KMeansClusterer();
+		clusterer.setPool(pool);
+		clusterer.setPoints(vmsToMigrate);
+		clusterer.setCentroids(centroids);
+		clusterer.assign();
+		return clusterer.getClusters(vmsToMigrate);
 	}
 
+	/**
+	 * Orders clustered VMs highest density cluster first, VMs of a cluster by decreasing
+	 * CPU demand.
+	 * 
+	 * @param cluster the clusters, or null if the VMs are not clustered
+	 * @param vmsToMigrate the VMs, returned as is if they are not clustered
+	 * @return the ordered VMs
+	 * @see #iterateByHighDensityCluster(List, List, boolean)
+	 */
+	@SuppressWarnings("unchecked")
 	public static <sortedVm extends PowerVm>  List<PowerVm> arrageByHighDensityCluster(List<List<PowerVm>> cluster, List<? extends Vm> vmsToMigrate) {
-	 	ArrayList<PowerVm> sortedVm = new ArrayList<PowerVm>(); 
-	    ArrayList<Integer> Density = new ArrayList<Integer>();    
-	    if (cluster != null) {
-		for (int icluster = 0; icluster < cluster.size(); icluster++) {
-			Density.add(cluster.get(icluster).size());
-		}	
-		
-	    Collections.sort(Density,Collections.reverseOrder());       
-      for (int icluster = 0; icluster < cluster.size(); icluster++) {
-    	  for (int iVmCluster = 0; iVmCluster < cluster.get(icluster).size(); iVmCluster++) {
-				sortedVm.add(cluster.get(icluster).get(iVmCluster));
+		if (cluster == null) {
+			return (List<PowerVm>) vmsToMigrate;
+		}
+		ArrayList<PowerVm> sortedVm = new ArrayList<PowerVm>(vmsToMigrate.size());
+		Iterator<PowerVm> iterator = new ClusterDensityIterator<PowerVm>(cluster, false);
+		while (iterator.hasNext()) {
+			sortedVm.add(iterator.next());
 		}
+		return sortedVm;
+	}
 
-      }	    
-	  return sortedVm;
-		 }
-	    else {
-	    	
-			return (List<PowerVm>) vmsToMigrate;
+	/**
+	 * Streams clustered VMs highest density cluster first, VMs of a cluster by decreasing
+	 * CPU demand. A cluster is only sorted when the iteration reaches it.
+	 * 
+	 * @param cluster the clusters, or null if the VMs are not clustered
+	 * @param vmsToMigrate the VMs, iterated as is if they are not clustered
+	 * @param rankByDemand whether clusters of the same size are ranked by aggregate CPU demand
+	 * @return the VMs in placement order
+	 */
+	public static Iterable<Vm> iterateByHighDensityCluster(
+			final List<List<PowerVm>> cluster,
+			List<? extends Vm> vmsToMigrate,
+			final boolean rankByDemand) {
+		if (cluster == null) {
+			return Collections.<Vm> unmodifiableList(vmsToMigrate);
 		}
-	    
-	 }
+		return new Iterable<Vm>() {
+
+			@Override
+			public Iterator<Vm> iterator() {
+				return new ClusterDensityIterator<Vm>(cluster, rankByDemand);
+			}
+		};
+	}
 
 	
 
@@ -0,0 +1,52 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power.models;
+
+/**
+ * Exception-free evaluation of power models. {@link PowerModel#getPower(double)} throws an
+ * {@link IllegalArgumentException} for a utilization out of [0, 1]; the placement scans evaluate
+ * the power of many candidate hosts, some of which would be loaded above 1, and check the
+ * utilization first instead, so that no exception is ever created on their path.
+ */
+public final class PowerModels {
+
+	/**
+	 * Not instantiable.
+	 */
+	private PowerModels() {
+	}
+
+	/**
+	 * Checks whether a power model can be evaluated at a utilization, that is whether the
+	 * utilization is between 0 and 1.
+	 *
+	 * @param utilization the utilization percentage of the critical resource
+	 * @return true, if the utilization is in [0, 1]; false if it is out of it or NaN
+	 */
+	public static boolean isFeasible(double utilization) {
+		return utilization >= 0 && utilization <= 1;
+	}
+
+	/**
+	 * Gets the power consumption of a power model, or NaN if the utilization is not
+	 * {@link #isFeasible(double) feasible}. The model is only evaluated at feasible utilizations,
+	 * where a model following the {@link PowerModel} contract does not throw.
+	 *
+	 * @param powerModel the power model
+	 * @param utilization the utilization percentage of the critical resource
+	 * @return the power consumption, or NaN if the utilization is out of [0, 1]
+	 */
+	public static double getPowerOrNaN(PowerModel powerModel, double utilization) {
+		if (!isFeasible(utilization)) {
+			return Double.NaN;
+		}
+		return powerModel.getPower(utilization);
+	}
+
+}